@@ -0,0 +1,118 @@
+package de.intranda.goobi.plugins;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Selects the buffer size JHOVE reads the images of a storage location with, by the measured throughput of the analyses.
+ * <p>
+ * Each candidate size is first used for a few images. Afterwards the size with the highest throughput is used, every
+ * {@value #EXPLORE_INTERVAL}th image is read with one of the other sizes. The throughput is an exponentially weighted average, so recent
+ * analyses outweigh old ones and the choice follows changes of the storage. The statistics are kept per file store and shared by all executions
+ * of the step.
+ */
+@Log4j2
+class BufferSizeTuner {
+    static final int[] CANDIDATES = { 4 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024 };
+    /**
+     * Number of images read with every candidate before a choice is made.
+     */
+    private static final int WARM_UP = 5;
+    private static final int EXPLORE_INTERVAL = 50;
+    /**
+     * Weight of a new measurement in the average of a candidate.
+     */
+    private static final double WEIGHT = 0.2;
+    private static final Map<String, BufferSizeTuner> TUNERS = new ConcurrentHashMap<>();
+
+    @Getter
+    private final String location;
+    private final int[] assigned = new int[CANDIDATES.length];
+    /**
+     * Average nanoseconds per byte of every candidate, 0 until it was measured.
+     */
+    private final double[] nanosPerByte = new double[CANDIDATES.length];
+    private long choices;
+    /**
+     * Index of the candidate with the highest throughput, -1 until every candidate was measured.
+     */
+    private int best = -1;
+
+    BufferSizeTuner(String location) {
+        this.location = location;
+    }
+
+    /**
+     * @return the tuner of the file store the folder is located on
+     */
+    static BufferSizeTuner forLocation(Path folder) {
+        String location;
+        try {
+            location = Files.getFileStore(folder).toString();
+        } catch (IOException e) {
+            location = folder.toString();
+        }
+        return TUNERS.computeIfAbsent(location, BufferSizeTuner::new);
+    }
+
+    /**
+     * @return the buffer size for the next image
+     */
+    public synchronized int next() {
+        choices++;
+        for (int i = 0; i < CANDIDATES.length; i++) {
+            if (assigned[i] < WARM_UP) {
+                assigned[i]++;
+                return CANDIDATES[i];
+            }
+        }
+        if (best < 0 || choices % EXPLORE_INTERVAL == 0) {
+            return CANDIDATES[(int) (choices / EXPLORE_INTERVAL % CANDIDATES.length)];
+        }
+        return CANDIDATES[best];
+    }
+
+    /**
+     * @return the buffer size with the highest throughput so far, the smallest candidate if not all were measured yet
+     */
+    public synchronized int getCurrent() {
+        return CANDIDATES[Math.max(0, best)];
+    }
+
+    /**
+     * Adds the time JHOVE needed to analyze an image with the given buffer size.
+     */
+    public synchronized void record(int bufferSize, long imageBytes, long analysisNanos) {
+        for (int i = 0; i < CANDIDATES.length; i++) {
+            if (CANDIDATES[i] == bufferSize && imageBytes > 0 && analysisNanos > 0) {
+                double rate = (double) analysisNanos / imageBytes;
+                nanosPerByte[i] = nanosPerByte[i] == 0 ? rate : nanosPerByte[i] + WEIGHT * (rate - nanosPerByte[i]);
+                updateBest();
+                return;
+            }
+        }
+    }
+
+    private void updateBest() {
+        int fastest = -1;
+        for (int i = 0; i < CANDIDATES.length; i++) {
+            if (nanosPerByte[i] == 0) {
+                return;
+            }
+            if (fastest < 0 || nanosPerByte[i] < nanosPerByte[fastest]) {
+                fastest = i;
+            }
+        }
+        if (fastest != best) {
+            best = fastest;
+            log.info("Using a JHOVE buffer size of {} KB for {}, {} MB/s", CANDIDATES[best] / 1024, location,
+                    String.format("%.1f", 1000 / nanosPerByte[best]));
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package de.intranda.goobi.plugins;
+
+import de.sub.goobi.helper.XmlTools;
+import lombok.extern.log4j.Log4j2;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only journal of the finished MIX results of a run, stored in the {@code mix_metadata} folder of the process.
+ * <p>
+ * Every {@code interval} results the journal is forced to disk. If a run is interrupted, the next run takes the results of all images whose size
+ * and modification time did not change from the journal instead of analyzing them again. The journal starts with the digest of the engine and
+ * mapping configuration, a journal of a different configuration is discarded. After a successful run the journal is deleted.
+ */
+@Log4j2
+class CheckpointJournal implements Closeable {
+    static final String FILE_NAME = "checkpoint.journal";
+    private static final String MAGIC = "mix-checkpoint-1";
+
+    private final Path file;
+    private final int interval;
+    private final Map<String, Record> records;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final XMLOutputter outputter = new XMLOutputter(Format.getCompactFormat());
+    private int unsynced;
+
+    private static final class Record {
+        private final long size;
+        private final long lastModified;
+        private final String xml;
+
+        private Record(long size, long lastModified, String xml) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.xml = xml;
+        }
+    }
+
+    private CheckpointJournal(Path file, int interval, Map<String, Record> records, FileChannel channel) {
+        this.file = file;
+        this.interval = Math.max(1, interval);
+        this.records = records;
+        this.channel = channel;
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Opens the journal in the given folder. The results of an earlier run with the same context are loaded, new results are appended.
+     *
+     * @param context digest of everything besides the image content that influences the results
+     * @param interval number of results after which the journal is forced to disk
+     */
+    static CheckpointJournal open(Path directory, String context, int interval) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(FILE_NAME);
+        Map<String, Record> records = new HashMap<>();
+        long validLength = Files.exists(file) ? load(file, context, records) : 0;
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // a partially written record of an interrupted run is cut off
+        channel.truncate(validLength);
+        channel.position(validLength);
+        CheckpointJournal journal = new CheckpointJournal(file, interval, records, channel);
+        if (validLength == 0) {
+            journal.out.writeUTF(MAGIC);
+            journal.out.writeUTF(context);
+            journal.out.flush();
+        } else if (!records.isEmpty()) {
+            log.info("Resuming from checkpoint journal {} with {} finished images", file, records.size());
+        }
+        return journal;
+    }
+
+    /**
+     * @return the length of the valid part of the journal, 0 if the journal has to be discarded
+     */
+    private static long load(Path file, String context, Map<String, Record> records) throws IOException {
+        long fileSize = Files.size(file);
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)));
+                DataInputStream in = new DataInputStream(counter)) {
+            long validLength = 0;
+            try {
+                if (!MAGIC.equals(in.readUTF()) || !context.equals(in.readUTF())) {
+                    log.info("Discarding checkpoint journal {} of a different configuration", file);
+                    return 0;
+                }
+                validLength = counter.getCount();
+                while (true) {
+                    String path = in.readUTF();
+                    long size = in.readLong();
+                    long lastModified = in.readLong();
+                    int length = in.readInt();
+                    if (length < 0 || length > fileSize - counter.getCount()) {
+                        // a damaged record, e.g. of a torn write, the journal is only valid up to here
+                        return validLength;
+                    }
+                    byte[] xml = new byte[length];
+                    in.readFully(xml);
+                    records.put(path, new Record(size, lastModified, new String(xml, StandardCharsets.UTF_8)));
+                    validLength = counter.getCount();
+                }
+            } catch (EOFException e) {
+                // end of the journal, or the last record was not written completely
+                return validLength;
+            }
+        }
+    }
+
+    /**
+     * @return the number of results taken from an earlier run
+     */
+    public int getResumableCount() {
+        return records.size();
+    }
+
+    /**
+     * @return the MIX element of the image if it was finished in an earlier run and did not change since, otherwise null
+     */
+    public Element lookup(Path image, long size, long lastModified) {
+        Record record = records.get(image.toString());
+        if (record == null || record.size != size || record.lastModified != lastModified) {
+            return null;
+        }
+        try {
+            return XmlTools.getSAXBuilder().build(new StringReader(record.xml)).detachRootElement();
+        } catch (JDOMException | IOException e) {
+            log.warn("Ignoring invalid checkpoint of {}: {}", image, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Appends a finished result. Every {@code interval} results the journal is forced to disk.
+     */
+    public void append(Path image, long size, long lastModified, Element mix) throws IOException {
+        byte[] xml = outputter.outputString(mix).getBytes(StandardCharsets.UTF_8);
+        out.writeUTF(image.toString());
+        out.writeLong(size);
+        out.writeLong(lastModified);
+        out.writeInt(xml.length);
+        out.write(xml);
+        if (++unsynced >= interval) {
+            checkpoint();
+        }
+    }
+
+    private void checkpoint() throws IOException {
+        out.flush();
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Closes and deletes the journal, called after the results were written to the mets file.
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Forces the remaining results to disk and closes the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            checkpoint();
+            out.close();
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package de.intranda.goobi.plugins;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Persistent record of the images that were enriched in earlier runs of the step, stored as tab separated text in the {@code mix_metadata}
+ * folder of the process.
+ * <p>
+ * For every image the size, the modification time, an optional content hash and the id of its techMD section are kept. Images whose size,
+ * modification time and hash did not change since the last run do not need to be analyzed again.
+ * <p>
+ * The first line holds a digest of the engine, module and mapping configuration. If it differs from the current one, all entries are discarded,
+ * because the recorded results were produced with another configuration.
+ */
+@Log4j2
+class EnrichmentManifest {
+    static final String FILE_NAME = "manifest.tsv";
+    private static final String CONTEXT_PREFIX = "#context\t";
+
+    /**
+     * The state of a single image.
+     */
+    @Getter
+    @AllArgsConstructor
+    static class Entry {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        /**
+         * SHA-256 digest of the content, null if hashing is disabled.
+         */
+        private final String hash;
+        /**
+         * Id of the techMD section of the image, null if the image has not been linked yet.
+         */
+        private final String techMdId;
+
+        Entry withTechMdId(String id) {
+            return new Entry(path, size, lastModified, hash, id);
+        }
+
+        boolean hasSameContent(Entry other) {
+            return other != null && size == other.size && lastModified == other.lastModified && Objects.equals(hash, other.hash);
+        }
+    }
+
+    private final Path file;
+    private final boolean useHash;
+    private final String context;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private EnrichmentManifest(Path file, boolean useHash, String context) {
+        this.file = file;
+        this.useHash = useHash;
+        this.context = context;
+    }
+
+    /**
+     * @param context digest of the configuration that influences the results, see {@link MixResultCache#contextDigest(String...)}
+     */
+    static EnrichmentManifest load(Path file, boolean useHash, String context) throws IOException {
+        EnrichmentManifest manifest = new EnrichmentManifest(file, useHash, context);
+        if (!Files.exists(file)) {
+            return manifest;
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(CONTEXT_PREFIX + context)) {
+            log.info("The configuration changed since the last run, all images of {} are analyzed again", file.getParent());
+            return manifest;
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 5) {
+                log.warn("Ignoring invalid line in {}: {}", file, line);
+                continue;
+            }
+            try {
+                Entry entry = new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), emptyToNull(fields[3]),
+                        emptyToNull(fields[4]));
+                manifest.entries.put(entry.getPath(), entry);
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid line in {}: {}", file, line);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Determines the current state of an image, the techMD id is not set.
+     */
+    Entry describe(Path image) throws IOException {
+        String hash = useHash ? FileDigest.sha256(image) : null;
+        return new Entry(image.toString(), Files.size(image), Files.getLastModifiedTime(image).toMillis(), hash, null);
+    }
+
+    /**
+     * @return the entry recorded by an earlier run or null
+     */
+    Entry get(String path) {
+        return entries.get(path);
+    }
+
+    void put(Entry entry) {
+        entries.put(entry.getPath(), entry);
+    }
+
+    /**
+     * Removes the entries of all images that no longer exist.
+     */
+    void retainAll(Set<String> paths) {
+        entries.keySet().retainAll(paths);
+    }
+
+    void save() throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write(CONTEXT_PREFIX + context);
+            writer.newLine();
+            for (Entry entry : entries.values()) {
+                writer.write(String.join("\t", entry.getPath(), String.valueOf(entry.getSize()), String.valueOf(entry.getLastModified()),
+                        nullToEmpty(entry.getHash()), nullToEmpty(entry.getTechMdId())));
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
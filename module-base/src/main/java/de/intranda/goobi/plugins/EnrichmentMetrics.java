@@ -0,0 +1,94 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * Receives timings and counters of the enrichment. Implementations must be thread safe, the image workers record their values concurrently.
+ */
+interface EnrichmentMetrics {
+
+    /**
+     * Metrics that discard all values.
+     */
+    EnrichmentMetrics NONE = new EnrichmentMetrics() {
+        @Override
+        public void recordPhase(Phase phase, long nanos) {
+        }
+
+        @Override
+        public void recordFile(long bytes, long nanos) {
+        }
+
+        @Override
+        public void recordCacheHit() {
+        }
+
+        @Override
+        public void recordSkipped(int count) {
+        }
+    };
+
+    /**
+     * The phases of a run, the per-image phases are recorded once per image.
+     */
+    enum Phase {
+        LIST_FILES,
+        METS_READ,
+        DIGEST,
+        CACHE,
+        HEADER,
+        JHOVE,
+        PARSE,
+        MAPPING,
+        SORTING,
+        PAGE_LOOKUP,
+        TECHMD,
+        METS_WRITE
+    }
+
+    void recordPhase(Phase phase, long nanos);
+
+    /**
+     * Records an image that was processed completely.
+     *
+     * @param bytes size of the image
+     * @param nanos time from the start of its processing until the MIX result was available
+     */
+    void recordFile(long bytes, long nanos);
+
+    void recordCacheHit();
+
+    /**
+     * Records images that were not analyzed, e.g. unchanged images in the incremental mode.
+     */
+    void recordSkipped(int count);
+
+    /**
+     * @return metrics that record every value in both of the given metrics
+     */
+    static EnrichmentMetrics combine(EnrichmentMetrics first, EnrichmentMetrics second) {
+        return new EnrichmentMetrics() {
+            @Override
+            public void recordPhase(Phase phase, long nanos) {
+                first.recordPhase(phase, nanos);
+                second.recordPhase(phase, nanos);
+            }
+
+            @Override
+            public void recordFile(long bytes, long nanos) {
+                first.recordFile(bytes, nanos);
+                second.recordFile(bytes, nanos);
+            }
+
+            @Override
+            public void recordCacheHit() {
+                first.recordCacheHit();
+                second.recordCacheHit();
+            }
+
+            @Override
+            public void recordSkipped(int count) {
+                first.recordSkipped(count);
+                second.recordSkipped(count);
+            }
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package de.intranda.goobi.plugins;
+
+import java.util.Map;
+
+/**
+ * Management interface of the metrics of all runs of the step since the start of the application.
+ */
+public interface EnrichmentMetricsMXBean {
+
+    long getFilesProcessed();
+
+    long getBytesRead();
+
+    long getCacheHits();
+
+    long getSkippedFiles();
+
+    double getFileLatencyP95Millis();
+
+    /**
+     * @return the total time spent in every phase in milliseconds
+     */
+    Map<String, Long> getPhaseTotalMillis();
+}
@@ -0,0 +1,144 @@
+package de.intranda.goobi.plugins;
+
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the images whose analysis failed, so a run can continue with the remaining images. It is shared by all workers of a run.
+ * <p>
+ * The run is only aborted once more images failed than the configured threshold allows. All errors are reported together at the end of the run,
+ * as one entry in the process journal and as a tab separated report in the {@code mix_metadata} folder of the process.
+ */
+@Log4j2
+class ErrorCollector {
+    static final String REPORT_FILE_NAME = "errors.tsv";
+
+    /**
+     * A single failed image.
+     */
+    @Value
+    static class ImageError {
+        String image;
+        String type;
+        String message;
+    }
+
+    private final Queue<ImageError> errors = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final int maxFailures;
+
+    /**
+     * @param maxFailures number of images that may fail without aborting the run
+     */
+    ErrorCollector(int maxFailures) {
+        this.maxFailures = Math.max(0, maxFailures);
+    }
+
+    /**
+     * Converts the configured threshold into a number of images. It is either an absolute number or a percentage of the images of the run like
+     * {@code 5%}. Missing or invalid values allow no failures.
+     */
+    static int parseThreshold(String threshold, int images) {
+        if (threshold == null || threshold.isBlank()) {
+            return 0;
+        }
+        String value = threshold.trim();
+        try {
+            if (value.endsWith("%")) {
+                double percent = Double.parseDouble(value.substring(0, value.length() - 1).trim());
+                return (int) Math.floor(images * percent / 100);
+            }
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid failure threshold '{}', the run is aborted on the first failed image", threshold);
+            return 0;
+        }
+    }
+
+    public void add(Path image, Exception e) {
+        String message = e.getMessage() == null ? "" : e.getMessage();
+        errors.add(new ImageError(image.toString(), e.getClass().getSimpleName(), message));
+        count.incrementAndGet();
+        log.warn("Could not create MIX metadata for {}: {}", image, message);
+        log.debug(e);
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    public boolean isEmpty() {
+        return count.get() == 0;
+    }
+
+    /**
+     * @return true if more images failed than the threshold allows
+     */
+    public boolean isExceeded() {
+        return count.get() > maxFailures;
+    }
+
+    /**
+     * @return all errors ordered by image, independent of the order in which the workers finished
+     */
+    public List<ImageError> getErrors() {
+        List<ImageError> sorted = new ArrayList<>(errors);
+        sorted.sort(Comparator.comparing(ImageError::getImage));
+        return sorted;
+    }
+
+    /**
+     * Writes all errors as tab separated lines with the columns image, error type and message.
+     */
+    public void writeReport(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("image\terror\tmessage\n");
+            for (ImageError error : getErrors()) {
+                writer.write(String.join("\t", error.getImage(), error.getType(), sanitize(error.getMessage())));
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static String sanitize(String value) {
+        return value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * @return the file names and errors of the first {@code limit} images
+     */
+    public String summary(int limit) {
+        List<ImageError> sorted = getErrors();
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < Math.min(limit, sorted.size()); i++) {
+            ImageError error = sorted.get(i);
+            if (i > 0) {
+                summary.append(", ");
+            }
+            summary.append(Paths.get(error.getImage()).getFileName())
+                    .append(" (")
+                    .append(error.getType())
+                    .append(": ")
+                    .append(sanitize(error.getMessage()))
+                    .append(')');
+        }
+        if (sorted.size() > limit) {
+            summary.append(" and ").append(sorted.size() - limit).append(" more");
+        }
+        return summary.toString();
+    }
+}
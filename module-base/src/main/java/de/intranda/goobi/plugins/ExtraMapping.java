@@ -0,0 +1,121 @@
+package de.intranda.goobi.plugins;
+
+import lombok.Getter;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.jdom2.Element;
+import org.jdom2.filter.Filters;
+import org.jdom2.xpath.XPathExpression;
+import org.jdom2.xpath.XPathFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Copies a value of the JHOVE result into the MIX element.
+ * <p>
+ * Sources of the form {@code //jhove:property[jhove:name='name']//jhove:value[1]} are answered from the property index of the {@link JhoveResult},
+ * all other sources are evaluated as XPath expression on the JHOVE document.
+ */
+@Getter
+class ExtraMapping {
+    private static final Pattern PROPERTY_SOURCE = Pattern.compile("//jhove:property\\[jhove:name='([^']+)'\\]//jhove:value\\[1\\]");
+
+    /**
+     * Parsed mappings per project and step, they survive the plugin instances of the single step executions.
+     */
+    private static final Map<String, CachedMappings> MAPPINGS_CACHE = new ConcurrentHashMap<>();
+
+    private final String source;
+    private final String target;
+    /**
+     * The element names of the target path, parsed once.
+     */
+    private final String[] targetPath;
+    private final String transform;
+    /**
+     * The JHOVE property name of the source, null if the source has to be evaluated as XPath expression.
+     */
+    private final String propertyName;
+    private final XPathExpression<Element> sourceXPathExpression;
+
+    ExtraMapping(String source, String target, String transform) {
+        this.source = source;
+        this.target = target;
+        this.targetPath = Arrays.stream(target.split("/")).filter(part -> !part.isBlank()).map(String::trim).toArray(String[]::new);
+        this.transform = transform;
+        Matcher matcher = PROPERTY_SOURCE.matcher(source.trim());
+        if (matcher.matches()) {
+            this.propertyName = matcher.group(1);
+            this.sourceXPathExpression = null;
+        } else {
+            this.propertyName = null;
+            this.sourceXPathExpression = XPathFactory.instance().compile(source, Filters.element(), null, MixMetadataEnrichmentPlugin.NAMESPACE_JHOVE);
+        }
+    }
+
+    /**
+     * @return the text of the source or null if the JHOVE result does not contain it
+     */
+    public String find(JhoveResult jhoveResult) {
+        if (propertyName != null) {
+            return jhoveResult.getProperties().get(propertyName);
+        }
+        if (jhoveResult.getDocument() == null) {
+            return null;
+        }
+        // compiled XPath expressions are not thread safe, but the mappings are shared by all workers
+        synchronized (sourceXPathExpression) {
+            Element element = sourceXPathExpression.evaluateFirst(jhoveResult.getDocument());
+            return element == null ? null : element.getText();
+        }
+    }
+
+    /**
+     * Returns the mappings of the given configuration. They are parsed only once per project and step as long as the configuration does not change.
+     */
+    static List<ExtraMapping> forConfiguration(String project, String step, List<HierarchicalConfiguration> config) {
+        List<String[]> definitions = config.stream()
+                .flatMap(c -> c.configurationsAt("value").stream())
+                .map(c -> new String[] { c.getString("@source"), c.getString("@target"), c.getString("@transform") })
+                .collect(Collectors.toList());
+        String signature = signature(definitions.stream());
+
+        CachedMappings cached = MAPPINGS_CACHE.compute(project + "\u0000" + step, (key, old) -> {
+            if (old != null && old.signature.equals(signature)) {
+                return old;
+            }
+            List<ExtraMapping> mappings = definitions.stream()
+                    .map(d -> new ExtraMapping(d[0], d[1], d[2]))
+                    .collect(Collectors.toUnmodifiableList());
+            return new CachedMappings(signature, mappings);
+        });
+        return cached.mappings;
+    }
+
+    /**
+     * @return a text that changes with every source, target and transformation of the mappings, in their order
+     */
+    static String signature(List<ExtraMapping> mappings) {
+        return signature(mappings.stream().map(m -> new String[] { m.source, m.target, m.transform }));
+    }
+
+    private static String signature(Stream<String[]> definitions) {
+        return definitions.map(d -> String.join("\u0000", d[0], d[1], String.valueOf(d[2]))).collect(Collectors.joining("\u0001"));
+    }
+
+    private static class CachedMappings {
+        private final String signature;
+        private final List<ExtraMapping> mappings;
+
+        CachedMappings(String signature, List<ExtraMapping> mappings) {
+            this.signature = signature;
+            this.mappings = mappings;
+        }
+    }
+}
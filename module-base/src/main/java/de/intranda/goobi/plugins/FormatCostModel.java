@@ -0,0 +1,78 @@
+package de.intranda.goobi.plugins;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimates the analysis time of an image from its size and format, so the most expensive images are started first and no worker is left with a
+ * single large image at the end of a run.
+ * <p>
+ * For every file extension an exponentially weighted moving average of the analysis time per byte is kept. It is fed by the timings of all runs
+ * of the step, so the estimates adapt to the JHOVE configuration and the storage. Formats without timings are estimated with the average of all
+ * known formats, without any timings the images are ordered by size alone.
+ */
+class FormatCostModel {
+    private static final FormatCostModel SHARED = new FormatCostModel();
+    /**
+     * Weight of a new timing in the moving average.
+     */
+    private static final double WEIGHT = 0.2;
+
+    private final Map<String, Double> nanosPerByte = new ConcurrentHashMap<>();
+
+    /**
+     * @return the model shared by all executions of the step
+     */
+    static FormatCostModel getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Adds the analysis time of a single image to the average of its format.
+     */
+    public void record(Path image, long bytes, long nanos) {
+        if (bytes <= 0 || nanos <= 0) {
+            return;
+        }
+        double rate = (double) nanos / bytes;
+        nanosPerByte.merge(format(image), rate, (average, current) -> average + WEIGHT * (current - average));
+    }
+
+    /**
+     * Orders the images by their estimated analysis time, the most expensive first. Images with the same estimate keep their order.
+     *
+     * @param sizes the size of every image in bytes
+     */
+    public List<Path> mostExpensiveFirst(List<Path> images, Map<Path, Long> sizes) {
+        double defaultRate = defaultRate();
+        Map<String, Double> rates = new HashMap<>();
+        Map<Path, Double> costs = new HashMap<>();
+        for (Path image : images) {
+            double rate = rates.computeIfAbsent(format(image), format -> rate(format, defaultRate));
+            costs.put(image, sizes.getOrDefault(image, 0L) * rate);
+        }
+        List<Path> ordered = new ArrayList<>(images);
+        ordered.sort(Comparator.comparingDouble((Path image) -> costs.get(image)).reversed());
+        return ordered;
+    }
+
+    private double rate(String format, double defaultRate) {
+        return nanosPerByte.getOrDefault(format, defaultRate);
+    }
+
+    private double defaultRate() {
+        return nanosPerByte.values().stream().mapToDouble(Double::doubleValue).average().orElse(1);
+    }
+
+    private static String format(Path image) {
+        String fileName = image.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,498 @@
+package de.intranda.goobi.plugins;
+
+import lombok.extern.log4j.Log4j2;
+import org.jdom2.Element;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fast alternative to JHOVE that only reads the TIFF and JPEG headers of an image.
+ * <p>
+ * The reader creates the basic MIX metadata (dimensions, bit depth, compression, photometric interpretation, resolution and camera) and exposes the
+ * EXIF capture settings as properties named like the JHOVE properties, so the configured extra mappings work unchanged. It does not validate the
+ * file. Formats it cannot handle, like BigTIFF, multi-page TIFF or JPEG 2000, are left to JHOVE.
+ */
+@Log4j2
+class ImageHeaderReader {
+    private static final int MAX_IFD_ENTRIES = 4096;
+    private static final int MAX_FIELD_SIZE = 1024 * 1024;
+    private static final int MAX_JPEG_SEGMENTS = 1024;
+
+    private static final int TAG_IMAGE_WIDTH = 256;
+    private static final int TAG_IMAGE_LENGTH = 257;
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+    private static final int TAG_COMPRESSION = 259;
+    private static final int TAG_PHOTOMETRIC_INTERPRETATION = 262;
+    private static final int TAG_MAKE = 271;
+    private static final int TAG_MODEL = 272;
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+    private static final int TAG_X_RESOLUTION = 282;
+    private static final int TAG_Y_RESOLUTION = 283;
+    private static final int TAG_RESOLUTION_UNIT = 296;
+    private static final int TAG_DATE_TIME = 306;
+    private static final int TAG_EXIF_IFD = 34665;
+
+    /**
+     * EXIF tags that are exposed as properties, named like in the JHOVE output.
+     */
+    private static final Map<Integer, String> EXIF_PROPERTIES = Map.ofEntries(
+            Map.entry(33434, "ExposureTime"),
+            Map.entry(33437, "FNumber"),
+            Map.entry(34850, "ExposureProgram"),
+            Map.entry(34855, "ISOSpeedRatings"),
+            Map.entry(36867, "DateTimeOriginal"),
+            Map.entry(37377, "ShutterSpeedValue"),
+            Map.entry(37378, "ApertureValue"),
+            Map.entry(37379, "BrightnessValue"),
+            Map.entry(37380, "ExposureBiasValue"),
+            Map.entry(37381, "MaxApertureValue"),
+            Map.entry(37382, "SubjectDistance"),
+            Map.entry(37383, "MeteringMode"),
+            Map.entry(37384, "LightSource"),
+            Map.entry(37385, "Flash"),
+            Map.entry(37386, "FocalLength"));
+
+    private static final Map<Long, String> COMPRESSION_SCHEMES = Map.of(
+            1L, "Uncompressed",
+            2L, "CCITT 1D",
+            3L, "T4/Group 3 Fax",
+            4L, "T6/Group 4 Fax",
+            5L, "LZW",
+            6L, "JPEG",
+            7L, "ISO JPEG",
+            8L, "Deflate",
+            32773L, "PackBits",
+            34712L, "JPEG 2000");
+
+    private static final Map<Long, String> COLOR_SPACES = Map.of(
+            0L, "WhiteIsZero",
+            1L, "BlackIsZero",
+            2L, "RGB",
+            3L, "PaletteColor",
+            4L, "TransparencyMask",
+            5L, "CMYK",
+            6L, "YCbCr",
+            8L, "CIELab");
+
+    private static final Map<Long, String> SAMPLING_FREQUENCY_UNITS = Map.of(
+            1L, "no absolute unit of measurement",
+            2L, "in.",
+            3L, "cm");
+
+    /**
+     * Reads the headers of an image.
+     *
+     * @return the MIX metadata and EXIF properties, or null if the format is not supported or the headers could not be interpreted
+     * @throws IOException if the file could not be read
+     */
+    public JhoveResult read(Path image) throws IOException {
+        try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+            ByteBuffer signature = readFully(channel, 0, 4);
+            int b0 = signature.get(0) & 0xff;
+            int b1 = signature.get(1) & 0xff;
+            int b2 = signature.get(2) & 0xff;
+            HeaderValues values;
+            if (b0 == 'I' && b1 == 'I' || b0 == 'M' && b1 == 'M') {
+                values = readTiff(channel, 0);
+            } else if (b0 == 0xff && b1 == 0xd8 && b2 == 0xff) {
+                values = readJpeg(channel);
+            } else {
+                return null;
+            }
+            if (values == null) {
+                return null;
+            }
+            values.fileSize = channel.size();
+            return JhoveResult.of(values.toMix(), values.properties);
+        } catch (EOFException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            log.debug("Could not interpret the headers of {}: {}", image, e.getMessage());
+            return null;
+        }
+    }
+
+    private HeaderValues readTiff(FileChannel channel, long base) throws IOException {
+        ByteBuffer header = readFully(channel, base, 8);
+        ByteOrder order = header.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        header.order(order);
+        if (header.getShort(2) != 42) {
+            // BigTIFF or no TIFF at all
+            return null;
+        }
+        TiffDirectory ifd0 = new TiffDirectory(channel, base, order, header.getInt(4) & 0xffffffffL);
+        if (base == 0 && ifd0.nextOffset != 0) {
+            // multi-page TIFF, JHOVE reports every page
+            return null;
+        }
+
+        HeaderValues values = new HeaderValues();
+        values.byteOrder = order == ByteOrder.LITTLE_ENDIAN ? "little endian" : "big endian";
+        values.formatName = base == 0 ? "image/tiff" : null;
+        values.width = ifd0.getLong(TAG_IMAGE_WIDTH);
+        values.height = ifd0.getLong(TAG_IMAGE_LENGTH);
+        values.bitsPerSample = ifd0.getLongs(TAG_BITS_PER_SAMPLE);
+        values.compression = ifd0.getLong(TAG_COMPRESSION);
+        values.photometricInterpretation = ifd0.getLong(TAG_PHOTOMETRIC_INTERPRETATION);
+        values.samplesPerPixel = ifd0.getLong(TAG_SAMPLES_PER_PIXEL);
+        values.xResolution = ifd0.getRational(TAG_X_RESOLUTION);
+        values.yResolution = ifd0.getRational(TAG_Y_RESOLUTION);
+        values.resolutionUnit = ifd0.getLong(TAG_RESOLUTION_UNIT);
+        values.make = ifd0.getAscii(TAG_MAKE);
+        values.model = ifd0.getAscii(TAG_MODEL);
+        values.dateTime = ifd0.getAscii(TAG_DATE_TIME);
+
+        Long exifOffset = ifd0.getLong(TAG_EXIF_IFD);
+        if (exifOffset != null) {
+            TiffDirectory exif = new TiffDirectory(channel, base, order, exifOffset);
+            for (Map.Entry<Integer, String> property : EXIF_PROPERTIES.entrySet()) {
+                String value = exif.getFirstValue(property.getKey());
+                if (value != null) {
+                    values.properties.put(property.getValue(), value);
+                }
+            }
+        }
+        return values;
+    }
+
+    private HeaderValues readJpeg(FileChannel channel) throws IOException {
+        HeaderValues values = null;
+        HeaderValues frame = new HeaderValues();
+        long position = 2;
+        for (int segment = 0; segment < MAX_JPEG_SEGMENTS; segment++) {
+            ByteBuffer markerBuffer = readFully(channel, position, 2);
+            if ((markerBuffer.get(0) & 0xff) != 0xff) {
+                throw new IllegalArgumentException("Invalid JPEG marker at " + position);
+            }
+            int marker = markerBuffer.get(1) & 0xff;
+            if (marker == 0xff) {
+                // fill byte
+                position++;
+                continue;
+            }
+            if (marker == 0xd9 || marker == 0xda) {
+                // end of image or start of scan, all headers have been read
+                break;
+            }
+            int length = readFully(channel, position + 2, 2).getShort(0) & 0xffff;
+            if (length < 2) {
+                throw new IllegalArgumentException("Invalid JPEG segment length at " + position);
+            }
+            long data = position + 4;
+            if (marker == 0xe1 && values == null && length >= 14) {
+                ByteBuffer exifHeader = readFully(channel, data, 6);
+                if (exifHeader.getInt(0) == 0x45786966 && exifHeader.getShort(4) == 0) {
+                    // "Exif\0\0" followed by a complete TIFF structure
+                    values = readTiff(channel, data + 6);
+                }
+            } else if (marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc) {
+                ByteBuffer sof = readFully(channel, data, 6);
+                int precision = sof.get(0) & 0xff;
+                frame.height = (long) (sof.getShort(1) & 0xffff);
+                frame.width = (long) (sof.getShort(3) & 0xffff);
+                int components = sof.get(5) & 0xff;
+                frame.samplesPerPixel = (long) components;
+                frame.bitsPerSample = new long[components];
+                Arrays.fill(frame.bitsPerSample, precision);
+                if (components == 1) {
+                    frame.photometricInterpretation = 1L;
+                } else if (components == 3) {
+                    frame.photometricInterpretation = 6L;
+                }
+            } else if (marker == 0xe0 && length >= 16) {
+                ByteBuffer jfif = readFully(channel, data, 12);
+                if (jfif.getInt(0) == 0x4a464946 && jfif.get(4) == 0 && jfif.get(7) != 0) {
+                    // "JFIF\0", density unit 1 = dots per inch, 2 = dots per cm
+                    frame.resolutionUnit = jfif.get(7) == 1 ? 2L : 3L;
+                    frame.xResolution = (jfif.getShort(8) & 0xffff) + "/1";
+                    frame.yResolution = (jfif.getShort(10) & 0xffff) + "/1";
+                }
+            }
+            position = data + length - 2;
+        }
+        if (frame.width == null) {
+            return null;
+        }
+
+        // the frame header is authoritative for the image structure, the EXIF data for everything else
+        HeaderValues result = values == null ? new HeaderValues() : values;
+        result.formatName = "image/jpeg";
+        result.byteOrder = null;
+        result.compression = 6L;
+        result.width = frame.width;
+        result.height = frame.height;
+        result.samplesPerPixel = frame.samplesPerPixel;
+        result.bitsPerSample = frame.bitsPerSample;
+        result.photometricInterpretation = frame.photometricInterpretation;
+        if (result.xResolution == null) {
+            result.xResolution = frame.xResolution;
+            result.yResolution = frame.yResolution;
+            result.resolutionUnit = frame.resolutionUnit;
+        }
+        return result;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * The fields of a single TIFF image file directory.
+     */
+    private static final class TiffDirectory {
+        private static final int[] TYPE_SIZES = { 0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8 };
+
+        private final Map<Integer, ByteBuffer> values = new HashMap<>();
+        private final Map<Integer, Integer> types = new HashMap<>();
+        private final Map<Integer, Integer> counts = new HashMap<>();
+        /**
+         * Offset of the next IFD, 0 for the last one.
+         */
+        private final long nextOffset;
+
+        TiffDirectory(FileChannel channel, long base, ByteOrder order, long offset) throws IOException {
+            ByteBuffer countBuffer = readFully(channel, base + offset, 2).order(order);
+            int entryCount = countBuffer.getShort(0) & 0xffff;
+            if (entryCount > MAX_IFD_ENTRIES) {
+                throw new IllegalArgumentException("Implausible number of IFD entries: " + entryCount);
+            }
+            ByteBuffer entries = readFully(channel, base + offset + 2, entryCount * 12).order(order);
+            for (int i = 0; i < entryCount; i++) {
+                int entry = i * 12;
+                int tag = entries.getShort(entry) & 0xffff;
+                int type = entries.getShort(entry + 2) & 0xffff;
+                long count = entries.getInt(entry + 4) & 0xffffffffL;
+                if (type >= TYPE_SIZES.length || type == 0) {
+                    continue;
+                }
+                long size = count * TYPE_SIZES[type];
+                if (size > MAX_FIELD_SIZE) {
+                    continue;
+                }
+                ByteBuffer value;
+                if (size <= 4) {
+                    value = ByteBuffer.allocate(4).order(order);
+                    value.putInt(0, entries.getInt(entry + 8));
+                } else {
+                    value = readFully(channel, base + (entries.getInt(entry + 8) & 0xffffffffL), (int) size).order(order);
+                }
+                values.put(tag, value);
+                types.put(tag, type);
+                counts.put(tag, (int) count);
+            }
+            nextOffset = readFully(channel, base + offset + 2 + entryCount * 12L, 4).order(order).getInt(0) & 0xffffffffL;
+        }
+
+        Long getLong(int tag) {
+            long[] longs = getLongs(tag);
+            return longs == null || longs.length == 0 ? null : longs[0];
+        }
+
+        long[] getLongs(int tag) {
+            ByteBuffer value = values.get(tag);
+            if (value == null) {
+                return null;
+            }
+            int type = types.get(tag);
+            long[] result = new long[counts.get(tag)];
+            for (int i = 0; i < result.length; i++) {
+                switch (type) {
+                    case 1, 7 -> result[i] = value.get(i) & 0xff;
+                    case 6 -> result[i] = value.get(i);
+                    case 3 -> result[i] = value.getShort(i * 2) & 0xffff;
+                    case 8 -> result[i] = value.getShort(i * 2);
+                    case 4 -> result[i] = value.getInt(i * 4) & 0xffffffffL;
+                    case 9 -> result[i] = value.getInt(i * 4);
+                    default -> {
+                        return null;
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return the first rational value as {@code numerator/denominator}, like JHOVE reports it
+         */
+        String getRational(int tag) {
+            ByteBuffer value = values.get(tag);
+            if (value == null || counts.get(tag) == 0) {
+                return null;
+            }
+            int type = types.get(tag);
+            if (type == 5) {
+                return (value.getInt(0) & 0xffffffffL) + "/" + (value.getInt(4) & 0xffffffffL);
+            } else if (type == 10) {
+                return value.getInt(0) + "/" + value.getInt(4);
+            }
+            Long number = getLong(tag);
+            return number == null ? null : number + "/1";
+        }
+
+        String getAscii(int tag) {
+            ByteBuffer value = values.get(tag);
+            if (value == null || types.get(tag) != 2) {
+                return null;
+            }
+            byte[] bytes = new byte[Math.min(counts.get(tag), value.limit())];
+            value.get(0, bytes);
+            int length = 0;
+            while (length < bytes.length && bytes[length] != 0) {
+                length++;
+            }
+            String text = new String(bytes, 0, length, StandardCharsets.ISO_8859_1).trim();
+            return text.isEmpty() ? null : text;
+        }
+
+        /**
+         * @return the first value of a field as text, regardless of its type
+         */
+        String getFirstValue(int tag) {
+            Integer type = types.get(tag);
+            if (type == null) {
+                return null;
+            }
+            return switch (type) {
+                case 2 -> getAscii(tag);
+                case 5, 10 -> getRational(tag);
+                default -> {
+                    Long number = getLong(tag);
+                    yield number == null ? null : String.valueOf(number);
+                }
+            };
+        }
+    }
+
+    /**
+     * The values read from the headers, converted into a MIX element at the end.
+     */
+    private static final class HeaderValues {
+        private final Map<String, String> properties = new HashMap<>();
+        private String byteOrder;
+        private String formatName;
+        private long fileSize;
+        private Long width;
+        private Long height;
+        private long[] bitsPerSample;
+        private Long compression;
+        private Long photometricInterpretation;
+        private Long samplesPerPixel;
+        private String xResolution;
+        private String yResolution;
+        private Long resolutionUnit;
+        private String make;
+        private String model;
+        private String dateTime;
+
+        Element toMix() {
+            Element mix = new Element("mix", MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+
+            Element basicDigitalObjectInformation = child(mix, "BasicDigitalObjectInformation");
+            text(basicDigitalObjectInformation, "fileSize", String.valueOf(fileSize));
+            if (formatName != null) {
+                text(child(basicDigitalObjectInformation, "FormatDesignation"), "formatName", formatName);
+            }
+            text(basicDigitalObjectInformation, "byteOrder", byteOrder);
+            if (compression != null) {
+                text(child(basicDigitalObjectInformation, "Compression"), "compressionScheme",
+                        COMPRESSION_SCHEMES.getOrDefault(compression, String.valueOf(compression)));
+            }
+
+            Element basicImageCharacteristics = child(child(mix, "BasicImageInformation"), "BasicImageCharacteristics");
+            text(basicImageCharacteristics, "imageWidth", width == null ? null : String.valueOf(width));
+            text(basicImageCharacteristics, "imageHeight", height == null ? null : String.valueOf(height));
+            if (photometricInterpretation != null) {
+                text(child(basicImageCharacteristics, "PhotometricInterpretation"), "colorSpace",
+                        COLOR_SPACES.getOrDefault(photometricInterpretation, String.valueOf(photometricInterpretation)));
+            }
+
+            if (make != null || model != null || dateTime != null) {
+                Element imageCaptureMetadata = child(mix, "ImageCaptureMetadata");
+                if (dateTime != null) {
+                    text(child(imageCaptureMetadata, "GeneralCaptureInformation"), "dateTimeCreated", isoDateTime(dateTime));
+                }
+                if (make != null || model != null) {
+                    Element digitalCameraCapture = child(imageCaptureMetadata, "DigitalCameraCapture");
+                    text(digitalCameraCapture, "digitalCameraManufacturer", make);
+                    if (model != null) {
+                        text(child(digitalCameraCapture, "DigitalCameraModel"), "digitalCameraModelName", model);
+                    }
+                }
+            }
+
+            if (xResolution != null || yResolution != null) {
+                Element spatialMetrics = child(child(mix, "ImageAssessmentMetadata"), "SpatialMetrics");
+                if (resolutionUnit != null) {
+                    text(spatialMetrics, "samplingFrequencyUnit", SAMPLING_FREQUENCY_UNITS.getOrDefault(resolutionUnit, String.valueOf(resolutionUnit)));
+                }
+                rational(spatialMetrics, "xSamplingFrequency", xResolution);
+                rational(spatialMetrics, "ySamplingFrequency", yResolution);
+            }
+            boolean hasBitsPerSample = bitsPerSample != null && bitsPerSample.length > 0;
+            if (hasBitsPerSample || samplesPerPixel != null) {
+                Element imageColorEncoding = child(child(mix, "ImageAssessmentMetadata"), "ImageColorEncoding");
+                if (hasBitsPerSample) {
+                    Element bits = child(imageColorEncoding, "BitsPerSample");
+                    for (long value : bitsPerSample) {
+                        Element bitsPerSampleValue = new Element("bitsPerSampleValue", MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+                        bits.addContent(bitsPerSampleValue.setText(String.valueOf(value)));
+                    }
+                    text(bits, "bitsPerSampleUnit", "integer");
+                }
+                text(imageColorEncoding, "samplesPerPixel", samplesPerPixel == null ? null : String.valueOf(samplesPerPixel));
+            }
+            return mix;
+        }
+
+        private static Element child(Element parent, String name) {
+            Element child = parent.getChild(name, MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+            if (child == null) {
+                child = new Element(name, MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+                parent.addContent(child);
+            }
+            return child;
+        }
+
+        private static void text(Element parent, String name, String value) {
+            if (value != null) {
+                child(parent, name).setText(value);
+            }
+        }
+
+        private static void rational(Element parent, String name, String value) {
+            if (value == null) {
+                return;
+            }
+            int slash = value.indexOf('/');
+            Element rational = child(parent, name);
+            text(rational, "numerator", value.substring(0, slash));
+            text(rational, "denominator", value.substring(slash + 1));
+        }
+
+        /**
+         * Converts the TIFF date format {@code YYYY:MM:DD HH:MM:SS} into ISO 8601.
+         */
+        private static String isoDateTime(String tiffDateTime) {
+            if (tiffDateTime.length() == 19 && tiffDateTime.charAt(4) == ':' && tiffDateTime.charAt(7) == ':' && tiffDateTime.charAt(10) == ' ') {
+                return tiffDateTime.substring(0, 4) + "-" + tiffDateTime.substring(5, 7) + "-" + tiffDateTime.substring(8, 10) + "T"
+                        + tiffDateTime.substring(11);
+            }
+            return tiffDateTime;
+        }
+    }
+}
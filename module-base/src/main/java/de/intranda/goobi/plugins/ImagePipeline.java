@@ -0,0 +1,84 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Bounded producer/consumer pipeline that processes images on a pool of workers.
+ * <p>
+ * At most {@code queueSize} images are in flight or waiting to be consumed at any time, so the memory used by finished results is bounded by the
+ * queue size and not by the number of images. Results are handed out in the order of the input list.
+ *
+ * @param <T> the result type of a single image
+ */
+class ImagePipeline<T> implements AutoCloseable {
+
+    @FunctionalInterface
+    interface ImageTask<T> {
+        T process(Path image) throws Exception;
+    }
+
+    private final Iterator<Path> images;
+    private final ImageTask<T> task;
+    private final int queueSize;
+    private final ExecutorService executor;
+    private final Deque<Future<T>> pending = new ArrayDeque<>();
+
+    /**
+     * Creates a pipeline on an executor of the caller, it is not shut down when the pipeline is closed.
+     */
+    ImagePipeline(List<Path> images, ExecutorService executor, int queueSize, ImageTask<T> task) {
+        this.images = images.iterator();
+        this.task = task;
+        this.queueSize = Math.max(1, queueSize);
+        this.executor = executor;
+    }
+
+    /**
+     * Fills the queue, so the workers can start while the caller prepares the consumption of the results.
+     */
+    public void start() {
+        while (images.hasNext() && pending.size() < queueSize) {
+            Path image = images.next();
+            pending.add(executor.submit(() -> task.process(image)));
+        }
+    }
+
+    public boolean hasNext() {
+        return !pending.isEmpty() || images.hasNext();
+    }
+
+    /**
+     * Waits for the next result in input order and schedules the next image in its place.
+     */
+    public T next() throws IOException, InterruptedException {
+        start();
+        Future<T> future = pending.poll();
+        if (future == null) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Image analysis failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            start();
+        }
+    }
+
+    /**
+     * Cancels the images that are still pending.
+     */
+    @Override
+    public void close() {
+        pending.forEach(future -> future.cancel(true));
+    }
+}
@@ -0,0 +1,89 @@
+package de.intranda.goobi.plugins;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps all metrics of the enrichment in memory, one {@link LatencyHistogram} per phase and one for the complete processing of an image.
+ */
+class InMemoryEnrichmentMetrics implements EnrichmentMetrics {
+    private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+    private final LatencyHistogram files = new LatencyHistogram();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    InMemoryEnrichmentMetrics() {
+        // all histograms are created up front, so the map is only read concurrently
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    @Override
+    public void recordPhase(Phase phase, long nanos) {
+        phases.get(phase).record(nanos);
+    }
+
+    @Override
+    public void recordFile(long bytes, long nanos) {
+        this.bytes.add(bytes);
+        files.record(nanos);
+    }
+
+    @Override
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    @Override
+    public void recordSkipped(int count) {
+        skipped.add(count);
+    }
+
+    public LatencyHistogram getPhase(Phase phase) {
+        return phases.get(phase);
+    }
+
+    public LatencyHistogram getFiles() {
+        return files;
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * @param wallNanos duration of the run
+     * @return a human readable summary with the throughput and the time spent in every phase that was recorded
+     */
+    public String summary(long wallNanos) {
+        double seconds = Math.max(wallNanos, 1) / 1e9;
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format(Locale.ROOT, "%d images (%.1f MB) in %.1f s, %.1f images/s, %d from cache, %d skipped", files.getCount(),
+                getBytes() / 1e6, seconds, files.getCount() / seconds, getCacheHits(), getSkipped()));
+        if (files.getCount() > 0) {
+            summary.append(String.format(Locale.ROOT, ", per image p50 <= %.1f ms, p95 <= %.1f ms, max %.1f ms", files.percentileNanos(0.5) / 1e6,
+                    files.percentileNanos(0.95) / 1e6, files.getMaxNanos() / 1e6));
+        }
+        for (Map.Entry<Phase, LatencyHistogram> entry : phases.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            summary.append(String.format(Locale.ROOT, "%n%s: %d x, total %.1f ms, p95 <= %.2f ms", entry.getKey().name().toLowerCase(Locale.ROOT),
+                    histogram.getCount(), histogram.getTotalNanos() / 1e6, histogram.percentileNanos(0.95) / 1e6));
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,179 @@
+package de.intranda.goobi.plugins;
+
+import edu.harvard.hul.ois.jhove.App;
+import edu.harvard.hul.ois.jhove.JhoveBase;
+import edu.harvard.hul.ois.jhove.JhoveException;
+import edu.harvard.hul.ois.jhove.Module;
+import edu.harvard.hul.ois.jhove.OutputHandler;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A single JHOVE engine consisting of its own {@link JhoveBase}, {@link Module} and XML {@link OutputHandler}.
+ * <p>
+ * JHOVE keeps per-file state in all three of these objects, so an instance must only be used by one thread at a time. Instances are expensive to
+ * create and are reused through the {@link JhoveAnalyzerPool}.
+ */
+@Log4j2
+class JhoveAnalyzer {
+    static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final int PIPE_SIZE = 64 * 1024;
+    /**
+     * Threads that parse the output of the analyses, each with its own parser.
+     */
+    private static final ExecutorService OUTPUT_READERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "jhove-output-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ThreadLocal<JhoveOutputParser> PARSERS = ThreadLocal.withInitial(JhoveOutputParser::new);
+
+    private final App app;
+    private final JhoveBase jhoveBase;
+    private final Module module;
+    private final OutputHandler xmlHandler;
+    /**
+     * Explicitly selected modules by name, null values mark names that are not configured in JHOVE.
+     */
+    private final Map<String, Module> namedModules = new HashMap<>();
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    JhoveAnalyzer(App app, File jhoveConfigFile) throws JhoveException {
+        this.app = app;
+        this.jhoveBase = new JhoveBase();
+        this.jhoveBase.init(jhoveConfigFile.getAbsolutePath(), null);
+
+        this.jhoveBase.setEncoding("utf-8");
+        this.jhoveBase.setBufferSize(DEFAULT_BUFFER_SIZE);
+        this.jhoveBase.setChecksumFlag(false);
+        this.jhoveBase.setShowRawFlag(true);
+        this.jhoveBase.setSignatureFlag(false);
+
+        this.module = jhoveBase.getModule(null);
+        this.xmlHandler = jhoveBase.getHandler("XML");
+    }
+
+    /**
+     * Identifies the JHOVE version and configuration, both determine which module is used and what it reports.
+     */
+    static String engineId(File jhoveConfigFile) throws IOException {
+        return "jhove " + JhoveBase.class.getPackage().getImplementationVersion() + " " + FileDigest.sha256(jhoveConfigFile.toPath());
+    }
+
+    /**
+     * Analyzes a single image. The XML output of JHOVE is parsed while it is written, so it is never held in memory as a whole.
+     *
+     * @param image the image to analyze
+     * @param moduleName name of the JHOVE module to use, null to let JHOVE detect the format
+     * @param auditFile optional file the raw JHOVE output is written to, it is then parsed from this file, may be null
+     * @param propertyNames the JHOVE properties to keep, see {@link JhoveOutputParser#read(Reader, Set, boolean)}
+     * @param documentRequired true if the result needs the complete document
+     * @return the parsed JHOVE result
+     */
+    public JhoveResult analyze(Path image, String moduleName, Path auditFile, Set<String> propertyNames, boolean documentRequired)
+            throws Exception {
+        if (auditFile != null) {
+            try (Writer out = Files.newBufferedWriter(auditFile, StandardCharsets.UTF_8)) {
+                write(image, moduleName, out);
+            }
+            try (Reader in = Files.newBufferedReader(auditFile, StandardCharsets.UTF_8)) {
+                return PARSERS.get().read(in, propertyNames, documentRequired);
+            }
+        }
+
+        // the parser consumes the output on another thread while JHOVE writes it into the pipe
+        PipedReader in = new PipedReader(PIPE_SIZE);
+        Writer out = new BufferedWriter(new PipedWriter(in), PIPE_SIZE);
+        Future<JhoveResult> result = OUTPUT_READERS.submit(() -> {
+            try (in) {
+                return PARSERS.get().read(in, propertyNames, documentRequired);
+            }
+        });
+        try (out) {
+            write(image, moduleName, out);
+        }
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Analyzes a single image.
+     *
+     * @return the XML output of JHOVE
+     */
+    public String process(Path image, String moduleName) throws Exception {
+        StringWriter buffer = new StringWriter();
+        write(image, moduleName, buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * Writes the XML output of JHOVE for the image, the writer is closed afterwards.
+     */
+    private void write(Path image, String moduleName, Writer out) throws Exception {
+        // this does the same as JhoveBase.dispatch(), which only supports writing to files or stdout
+        xmlHandler.reset();
+        xmlHandler.setApp(app);
+        xmlHandler.setBase(jhoveBase);
+        xmlHandler.setWriter(new PrintWriter(out));
+        xmlHandler.showHeader();
+        jhoveBase.process(app, resolveModule(moduleName), xmlHandler, image.toString());
+        xmlHandler.showFooter();
+        xmlHandler.close();
+    }
+
+    /**
+     * Sets the size of the buffer JHOVE reads the images with. Analyzers are reused, so it has to be set whenever an analyzer is taken from the
+     * pool.
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize != this.bufferSize) {
+            jhoveBase.setBufferSize(bufferSize);
+            this.bufferSize = bufferSize;
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    private Module resolveModule(String moduleName) {
+        if (moduleName == null) {
+            return module;
+        }
+        if (!namedModules.containsKey(moduleName)) {
+            Module namedModule = jhoveBase.getModule(moduleName);
+            if (namedModule == null) {
+                log.warn("JHOVE module {} is not configured, the format is detected automatically", moduleName);
+            }
+            namedModules.put(moduleName, namedModule);
+        }
+        Module namedModule = namedModules.get(moduleName);
+        return namedModule == null ? module : namedModule;
+    }
+}
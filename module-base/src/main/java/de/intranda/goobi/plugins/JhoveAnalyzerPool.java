@@ -0,0 +1,106 @@
+package de.intranda.goobi.plugins;
+
+import edu.harvard.hul.ois.jhove.App;
+import edu.harvard.hul.ois.jhove.JhoveException;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Initialized {@link JhoveAnalyzer} instances of a JHOVE configuration, shared by all executions of the step.
+ * <p>
+ * Parsing the configuration and loading the modules is only done when a pool has no idle analyzer left. As many analyzers are kept as were used
+ * at the same time, e.g. by parallel workers or by several processes of a batch. A pool is replaced as soon as the configuration file changes.
+ */
+@Log4j2
+class JhoveAnalyzerPool {
+    private static final Map<String, JhoveAnalyzerPool> POOLS = new ConcurrentHashMap<>();
+
+    private final File jhoveConfigFile;
+    private final long configSize;
+    private final long configLastModified;
+    private final App app;
+    private final Deque<JhoveAnalyzer> idle = new ArrayDeque<>();
+    private int inUse;
+    /**
+     * Highest number of analyzers that were used at the same time, that many are kept for later executions.
+     */
+    private int peakInUse;
+    /**
+     * Identifies the JHOVE version and configuration, see {@link JhoveAnalyzer#engineId(File)}.
+     */
+    @Getter
+    private final String engineId;
+
+    private JhoveAnalyzerPool(File jhoveConfigFile) throws IOException {
+        this.jhoveConfigFile = jhoveConfigFile;
+        this.configSize = jhoveConfigFile.length();
+        this.configLastModified = jhoveConfigFile.lastModified();
+        this.engineId = JhoveAnalyzer.engineId(jhoveConfigFile);
+        Calendar calendar = Calendar.getInstance();
+        this.app = new App(MixMetadataEnrichmentPlugin.class.getSimpleName(), "1.0",
+                new int[] { calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH) }, "jHove", "");
+    }
+
+    /**
+     * Returns the pool of the given configuration file. A new pool is created if the file was modified since the current pool was created.
+     */
+    static JhoveAnalyzerPool forConfiguration(File jhoveConfigFile) throws IOException {
+        File file = jhoveConfigFile.getAbsoluteFile();
+        JhoveAnalyzerPool pool = POOLS.get(file.getPath());
+        if (pool != null && pool.matches(file)) {
+            return pool;
+        }
+        synchronized (POOLS) {
+            pool = POOLS.get(file.getPath());
+            if (pool == null || !pool.matches(file)) {
+                pool = new JhoveAnalyzerPool(file);
+                POOLS.put(file.getPath(), pool);
+                log.debug("Created JHOVE analyzer pool for {}", file);
+            }
+            return pool;
+        }
+    }
+
+    private boolean matches(File file) {
+        return file.length() == configSize && file.lastModified() == configLastModified;
+    }
+
+    /**
+     * @return an idle analyzer or a newly initialized one, it must be given back with {@link #release(JhoveAnalyzer)}
+     */
+    public JhoveAnalyzer acquire() throws JhoveException {
+        synchronized (idle) {
+            inUse++;
+            peakInUse = Math.max(peakInUse, inUse);
+            JhoveAnalyzer analyzer = idle.poll();
+            if (analyzer != null) {
+                return analyzer;
+            }
+        }
+        try {
+            return new JhoveAnalyzer(app, jhoveConfigFile);
+        } catch (JhoveException | RuntimeException e) {
+            synchronized (idle) {
+                inUse--;
+            }
+            throw e;
+        }
+    }
+
+    public void release(JhoveAnalyzer analyzer) {
+        synchronized (idle) {
+            inUse--;
+            if (idle.size() < peakInUse) {
+                idle.push(analyzer);
+            }
+        }
+    }
+}
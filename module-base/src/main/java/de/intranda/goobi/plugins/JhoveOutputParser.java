@@ -0,0 +1,56 @@
+package de.intranda.goobi.plugins;
+
+import de.sub.goobi.helper.XmlTools;
+import org.jdom2.Document;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the XML output of JHOVE, either as complete document or as stream, while it is written or from a string. Instances must only be used by one thread at a time.
+ */
+class JhoveOutputParser {
+    private final SAXBuilder saxBuilder = XmlTools.getSAXBuilder();
+    private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    JhoveOutputParser() {
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public Document parse(Reader jhoveOutput) throws JDOMException, IOException {
+        return saxBuilder.build(jhoveOutput);
+    }
+
+    /**
+     * Streams over the output and only keeps the MIX elements and the given properties, see {@link JhoveResult#stream(XMLStreamReader, Set)}.
+     */
+    public JhoveResult extract(Reader jhoveOutput, Set<String> propertyNames) throws XMLStreamException, JDOMException {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(jhoveOutput);
+        try {
+            return JhoveResult.stream(reader, propertyNames);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @param documentRequired true if the result needs the complete document, e.g. for extra mappings with XPath expressions
+     */
+    public JhoveResult read(Reader jhoveOutput, Set<String> propertyNames, boolean documentRequired)
+            throws JDOMException, IOException, XMLStreamException {
+        return documentRequired ? JhoveResult.scan(parse(jhoveOutput), propertyNames) : extract(jhoveOutput, propertyNames);
+    }
+
+    public JhoveResult read(String jhoveOutput, Set<String> propertyNames, boolean documentRequired)
+            throws JDOMException, IOException, XMLStreamException {
+        return read(new StringReader(jhoveOutput), propertyNames, documentRequired);
+    }
+}
@@ -0,0 +1,199 @@
+package de.intranda.goobi.plugins;
+
+import lombok.Getter;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.filter.Filters;
+import org.jdom2.input.StAXStreamBuilder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The parts of a JHOVE result the plugin needs: the MIX elements and the values of the JHOVE properties used by the extra mappings.
+ */
+@Getter
+class JhoveResult {
+    /**
+     * The parsed JHOVE document, used for extra mappings that cannot be answered from the property index. Null if the result was not created by
+     * JHOVE.
+     */
+    private final Document document;
+    private final List<Element> mixElements = new ArrayList<>();
+    /**
+     * Property name to the text of its first {@code jhove:value}, equivalent to {@code //jhove:property[jhove:name='name']//jhove:value[1]}.
+     */
+    private final Map<String, String> properties = new HashMap<>();
+
+    private JhoveResult(Document document) {
+        this.document = document;
+    }
+
+    /**
+     * Creates a result that was not produced by JHOVE, extra mappings can only use the given properties.
+     */
+    static JhoveResult of(Element mix, Map<String, String> properties) {
+        JhoveResult result = new JhoveResult(null);
+        result.mixElements.add(mix);
+        result.properties.putAll(properties);
+        return result;
+    }
+
+    /**
+     * Collects all MIX elements and the requested properties in a single pass over the document.
+     */
+    static JhoveResult scan(Document document, Set<String> propertyNames) {
+        JhoveResult result = new JhoveResult(document);
+        for (Element element : document.getDescendants(Filters.element())) {
+            if ("mix".equals(element.getName())) {
+                result.mixElements.add(element);
+            } else if ("property".equals(element.getName()) && MixMetadataEnrichmentPlugin.NAMESPACE_JHOVE.equals(element.getNamespace())) {
+                result.indexProperty(element, propertyNames);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collects all MIX elements and the requested properties while streaming over the JHOVE output. Only the MIX subtrees are materialized, all
+     * other parts of the output like the raw TIFF tags and EXIF blocks are dropped as they are read. The result has no document, so it can't be
+     * used for extra mappings with XPath expressions.
+     * <p>
+     * The properties are the same as those of {@link #scan(Document, Set)}: the first property of a name in document order that has a value.
+     */
+    static JhoveResult stream(XMLStreamReader reader, Set<String> propertyNames) throws XMLStreamException, JDOMException {
+        JhoveResult result = new JhoveResult(null);
+        StAXStreamBuilder builder = new StAXStreamBuilder();
+        boolean indexProperties = !propertyNames.isEmpty();
+        Deque<PropertyState> openProperties = new ArrayDeque<>();
+        Deque<TextState> openTexts = new ArrayDeque<>();
+        Map<String, Integer> propertyPositions = new HashMap<>();
+        int propertyCount = 0;
+        int depth = 0;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    if ("mix".equals(reader.getLocalName())) {
+                        // consumes the complete subtree up to the end tag of the MIX element
+                        result.mixElements.add((Element) builder.fragment(reader));
+                        continue;
+                    }
+                    depth++;
+                    if (!indexProperties || !MixMetadataEnrichmentPlugin.NAMESPACE_JHOVE.getURI().equals(reader.getNamespaceURI())) {
+                        continue;
+                    }
+                    PropertyState property = openProperties.peek();
+                    switch (reader.getLocalName()) {
+                        case "property" -> openProperties.push(new PropertyState(propertyCount++, depth));
+                        case "name" -> {
+                            if (property != null && property.depth == depth - 1 && property.name == null) {
+                                property.name = new TextState(depth);
+                                openTexts.push(property.name);
+                            }
+                        }
+                        case "value" -> {
+                            // the first value below a property, possibly of a nested property
+                            TextState value = null;
+                            for (PropertyState open : openProperties) {
+                                if (open.value == null) {
+                                    value = value == null ? new TextState(depth) : value;
+                                    open.value = value;
+                                }
+                            }
+                            if (value != null) {
+                                openTexts.push(value);
+                            }
+                        }
+                        default -> {
+                            // other JHOVE elements are skipped
+                        }
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                    TextState text = openTexts.peek();
+                    if (text != null && text.depth == depth) {
+                        text.text.append(reader.getText());
+                    }
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    if (!openTexts.isEmpty() && openTexts.peek().depth == depth) {
+                        openTexts.pop();
+                    }
+                    if (!openProperties.isEmpty() && openProperties.peek().depth == depth) {
+                        result.indexProperty(openProperties.pop(), propertyNames, propertyPositions);
+                    }
+                    depth--;
+                }
+                default -> {
+                    // comments and processing instructions are not needed
+                }
+            }
+        }
+        return result;
+    }
+
+    private void indexProperty(PropertyState property, Set<String> propertyNames, Map<String, Integer> propertyPositions) {
+        if (property.name == null || property.value == null) {
+            return;
+        }
+        String name = property.name.text.toString();
+        if (!propertyNames.contains(name)) {
+            return;
+        }
+        // nested properties end before the enclosing ones, but the first start tag wins
+        Integer position = propertyPositions.get(name);
+        if (position == null || property.position < position) {
+            propertyPositions.put(name, property.position);
+            properties.put(name, property.value.text.toString());
+        }
+    }
+
+    /**
+     * An open {@code jhove:property} element while streaming.
+     */
+    private static final class PropertyState {
+        private final int position;
+        private final int depth;
+        private TextState name;
+        private TextState value;
+
+        private PropertyState(int position, int depth) {
+            this.position = position;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * The text directly contained in an open element while streaming.
+     */
+    private static final class TextState {
+        private final int depth;
+        private final StringBuilder text = new StringBuilder();
+
+        private TextState(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    private void indexProperty(Element property, Set<String> propertyNames) {
+        String name = property.getChildText("name", MixMetadataEnrichmentPlugin.NAMESPACE_JHOVE);
+        if (name == null || !propertyNames.contains(name) || properties.containsKey(name)) {
+            return;
+        }
+        // the first value in document order, a property without any value does not hide later properties of the same name
+        Iterator<Element> values = property.getDescendants(Filters.element("value", MixMetadataEnrichmentPlugin.NAMESPACE_JHOVE)).iterator();
+        if (values.hasNext()) {
+            properties.put(name, values.next().getText());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package de.intranda.goobi.plugins;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the accumulated metrics of all runs through the platform MBean server.
+ */
+@Log4j2
+class JmxEnrichmentMetrics implements EnrichmentMetrics, EnrichmentMetricsMXBean {
+    static final String OBJECT_NAME = "de.intranda.goobi.plugins:type=MixMetadataEnrichment";
+
+    private static volatile JmxEnrichmentMetrics instance;
+
+    private final InMemoryEnrichmentMetrics totals = new InMemoryEnrichmentMetrics();
+
+    private JmxEnrichmentMetrics() {
+    }
+
+    /**
+     * @return the instance registered at the platform MBean server, it is registered with the first call
+     */
+    static JmxEnrichmentMetrics getInstance() {
+        JmxEnrichmentMetrics metrics = instance;
+        if (metrics == null) {
+            synchronized (JmxEnrichmentMetrics.class) {
+                metrics = instance;
+                if (metrics == null) {
+                    metrics = new JmxEnrichmentMetrics();
+                    try {
+                        ObjectName name = new ObjectName(OBJECT_NAME);
+                        if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+                        }
+                    } catch (JMException e) {
+                        log.warn("Could not register the MIX enrichment metrics: {}", e.getMessage());
+                    }
+                    instance = metrics;
+                }
+            }
+        }
+        return metrics;
+    }
+
+    @Override
+    public void recordPhase(Phase phase, long nanos) {
+        totals.recordPhase(phase, nanos);
+    }
+
+    @Override
+    public void recordFile(long bytes, long nanos) {
+        totals.recordFile(bytes, nanos);
+    }
+
+    @Override
+    public void recordCacheHit() {
+        totals.recordCacheHit();
+    }
+
+    @Override
+    public void recordSkipped(int count) {
+        totals.recordSkipped(count);
+    }
+
+    @Override
+    public long getFilesProcessed() {
+        return totals.getFiles().getCount();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return totals.getBytes();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return totals.getCacheHits();
+    }
+
+    @Override
+    public long getSkippedFiles() {
+        return totals.getSkipped();
+    }
+
+    @Override
+    public double getFileLatencyP95Millis() {
+        return totals.getFiles().percentileNanos(0.95) / 1e6;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseTotalMillis() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            result.put(phase.name(), totals.getPhase(phase).getTotalNanos() / 1_000_000);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+package de.intranda.goobi.plugins;
+
+import org.jdom2.Element;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The target paths of all extra mappings merged into a tree, so all mappings of an image are applied in a single walk over the MIX element.
+ * <p>
+ * Common ancestors like {@code ImageCaptureMetadata/DigitalCameraCapture/CameraCaptureSettings/ImageData} are looked up or created only once per
+ * image, and only if at least one mapping below them has a value. Instances are immutable and can be used by several threads.
+ */
+class MappingTree {
+    private final List<ExtraMapping> mappings;
+    private final Node root = new Node(null);
+
+    private static final class Node {
+        private final String name;
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        /**
+         * Indexes of the mappings that target this node.
+         */
+        private final List<Integer> targetOf = new ArrayList<>();
+        /**
+         * Indexes of the mappings that target this node or one of its descendants.
+         */
+        private int[] subtree;
+
+        private Node(String name) {
+            this.name = name;
+        }
+
+        private boolean hasValue(String[] values) {
+            for (int index : subtree) {
+                if (values[index] != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    MappingTree(List<ExtraMapping> mappings) {
+        this.mappings = mappings;
+        for (int i = 0; i < mappings.size(); i++) {
+            Node node = root;
+            for (String part : mappings.get(i).getTargetPath()) {
+                node = node.children.computeIfAbsent(part, Node::new);
+            }
+            node.targetOf.add(i);
+        }
+        collectSubtree(root);
+    }
+
+    private static List<Integer> collectSubtree(Node node) {
+        List<Integer> indexes = new ArrayList<>(node.targetOf);
+        for (Node child : node.children.values()) {
+            indexes.addAll(collectSubtree(child));
+        }
+        node.subtree = indexes.stream().mapToInt(Integer::intValue).toArray();
+        return indexes;
+    }
+
+    /**
+     * Looks up the values of all mappings in the JHOVE result and writes them into the MIX element. Missing target elements are created.
+     */
+    public void apply(Element mix, JhoveResult jhoveResult) {
+        String[] values = new String[mappings.size()];
+        boolean found = false;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = mappings.get(i).find(jhoveResult);
+            found |= values[i] != null;
+        }
+        if (found) {
+            apply(root, mix, values);
+        }
+    }
+
+    private void apply(Node node, Element element, String[] values) {
+        for (int index : node.targetOf) {
+            if (values[index] != null) {
+                MixValueTransforms.saveTransformedValue(element, values[index], mappings.get(index).getTransform());
+            }
+        }
+        Map<String, Element> existingChildren = null;
+        for (Node child : node.children.values()) {
+            if (!child.hasValue(values)) {
+                continue;
+            }
+            if (existingChildren == null) {
+                existingChildren = indexChildren(element, node);
+            }
+            Element target = existingChildren.get(child.name);
+            if (target == null) {
+                target = new Element(child.name, MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+                element.addContent(target);
+            }
+            apply(child, target, values);
+        }
+    }
+
+    /**
+     * @return the first child element for every name of the child nodes, found in a single pass over the children of the element
+     */
+    private static Map<String, Element> indexChildren(Element element, Node node) {
+        Map<String, Element> index = new HashMap<>();
+        for (Element child : element.getChildren()) {
+            if (node.children.containsKey(child.getName())) {
+                index.putIfAbsent(child.getName(), child);
+            }
+        }
+        return index;
+    }
+}
@@ -1,43 +1,57 @@
 package de.intranda.goobi.plugins;
 
-import de.sub.goobi.helper.XmlTools;
-import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
-import org.jdom2.filter.Filters;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.xpath.XPathFactory;
 
 import java.io.IOException;
 import java.util.List;
 
+/**
+ * Sorts the elements of a MIX tree into the order required by the schema.
+ * <p>
+ * The schema model is shared by all instances, so creating a sorter is cheap. Instances are immutable and can be used by several threads.
+ */
 public class MixElementSorter {
-    private List<String> schemaElementOrder;
+    private final MixSchema schema;
 
     public MixElementSorter() throws IOException, JDOMException {
-        loadSchema();
+        this.schema = MixSchema.getInstance();
     }
 
-    private void loadSchema() throws IOException, JDOMException {
-        SAXBuilder jdomBuilder = XmlTools.getSAXBuilder();
-        Document jdomDocument = jdomBuilder.build(this.getClass().getResourceAsStream("/mix.xsd"));
-
-        XPathFactory xPathFactory = XPathFactory.instance();
+    public void fixOrder(Element mixRoot) {
+        fixOrder(mixRoot, "mix".equals(mixRoot.getName()) ? schema.getRootType() : null);
+    }
 
-        List<Element> elements = xPathFactory.compile("//*[local-name()='element']", Filters.element()).evaluate(jdomDocument);
-        schemaElementOrder = elements.stream().map(e -> e.getAttribute("name").getValue()).toList();
+    /**
+     * @param type the schema type of the element, null if unknown. Elements without a known type are sorted by the global element order of the
+     *            schema.
+     */
+    private void fixOrder(Element element, MixSchema.ElementType type) {
+        List<Element> children = element.getChildren();
+        if (children.isEmpty()) {
+            return;
+        }
+        if (!isOrdered(children, type)) {
+            element.sortChildren((a, b) -> Integer.compare(rankOf(a, type), rankOf(b, type)));
+        }
+        for (Element child : children) {
+            fixOrder(child, type == null ? null : type.childType(child.getName()));
+        }
     }
 
-    public void fixOrder(Element mixRoot) {
-        mixRoot.sortChildren(this::elementComparator);
-        for (Element child : mixRoot.getChildren()) {
-            fixOrder(child);
+    private boolean isOrdered(List<Element> children, MixSchema.ElementType type) {
+        int previousRank = Integer.MIN_VALUE;
+        for (Element child : children) {
+            int rank = rankOf(child, type);
+            if (rank < previousRank) {
+                return false;
+            }
+            previousRank = rank;
         }
+        return true;
     }
 
-    private int elementComparator(Element a, Element b) {
-        int aOrder = this.schemaElementOrder.indexOf(a.getName());
-        int bOrder = this.schemaElementOrder.indexOf(b.getName());
-        return aOrder - bOrder;
+    private int rankOf(Element element, MixSchema.ElementType type) {
+        return type == null ? schema.globalRankOf(element.getName()) : type.rankOf(element.getName());
     }
 }
@@ -0,0 +1,57 @@
+package de.intranda.goobi.plugins;
+
+import lombok.extern.log4j.Log4j2;
+import org.jdom2.Element;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Turns the {@link JhoveResult} of a single image into the final MIX element: the extra mappings are applied and the elements are sorted into the
+ * order of the schema.
+ * <p>
+ * Instances only hold immutable state and can be used by several threads.
+ */
+@Log4j2
+class MixExtractor {
+    private final MappingTree mappingTree;
+    private final MixElementSorter mixElementSorter;
+    private final EnrichmentMetrics metrics;
+
+    MixExtractor(List<ExtraMapping> extraMappings, MixElementSorter mixElementSorter, EnrichmentMetrics metrics) {
+        this.mappingTree = new MappingTree(extraMappings);
+        this.mixElementSorter = mixElementSorter;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Extracts the MIX element from a JHOVE result and applies the configured extra mappings to it.
+     *
+     * @return the detached MIX element or null if the JHOVE result does not contain any MIX metadata
+     */
+    public Element extract(Path file, JhoveResult jhoveResult) {
+        List<Element> resultSet = jhoveResult.getMixElements();
+
+        if (resultSet.isEmpty()) {
+            log.warn("No MIX metadata found for image: {}", file);
+            return null;
+        }
+
+        if (resultSet.size() != 1) {
+            throw new IllegalStateException("Only a single MIX metadata result expected, found: " + resultSet.size());
+        }
+
+        Element result = resultSet.get(0);
+
+        long start = System.nanoTime();
+        mappingTree.apply(result, jhoveResult);
+
+        long sortStart = System.nanoTime();
+        metrics.recordPhase(EnrichmentMetrics.Phase.MAPPING, sortStart - start);
+        mixElementSorter.fixOrder(result);
+        metrics.recordPhase(EnrichmentMetrics.Phase.SORTING, System.nanoTime() - sortStart);
+
+        // detach the result, so the complete JHOVE document can be garbage collected
+        return result.detach();
+    }
+}
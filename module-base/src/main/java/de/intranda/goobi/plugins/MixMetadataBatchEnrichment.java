@@ -0,0 +1,121 @@
+package de.intranda.goobi.plugins;
+
+import de.sub.goobi.persistence.managers.ProcessManager;
+import lombok.extern.log4j.Log4j2;
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.goobi.production.enums.PluginReturnValue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Enriches the MIX metadata of many processes in one invocation, e.g. during migrations.
+ * <p>
+ * Every process is handled by its own plugin instance, configured with the project and step configuration of the step with the given title. All
+ * expensive state is shared between the processes: the initialized JHOVE engines of the {@link JhoveAnalyzerPool}, the {@link MixSchema}, the
+ * parsed {@link ExtraMapping} definitions with their compiled XPath expressions and the {@link MixResultCache}.
+ * <p>
+ * At most {@code parallelism} processes are enriched at the same time and at most {@code queueSize} further processes are loaded and waiting, so
+ * the caller is blocked instead of loading all processes up front.
+ */
+@Log4j2
+public class MixMetadataBatchEnrichment {
+
+    @FunctionalInterface
+    interface ProcessTask {
+        PluginReturnValue enrich(int processId) throws Exception;
+    }
+
+    private final int parallelism;
+    private final int queueSize;
+    private final ProcessTask task;
+
+    /**
+     * @param stepTitle title of the step whose configuration is used, the step must exist in every process
+     * @param parallelism number of processes enriched at the same time, each of them additionally uses the configured number of threads
+     * @param queueSize number of processes that are waiting for a free slot
+     */
+    public MixMetadataBatchEnrichment(String stepTitle, int parallelism, int queueSize) {
+        this(parallelism, queueSize, processId -> enrich(stepTitle, processId));
+    }
+
+    MixMetadataBatchEnrichment(int parallelism, int queueSize, ProcessTask task) {
+        this.parallelism = Math.max(1, parallelism);
+        this.queueSize = Math.max(0, queueSize);
+        this.task = task;
+    }
+
+    /**
+     * Enriches the given processes.
+     *
+     * @return the result of every process in the order of the ids, processes without a matching step are reported as {@link PluginReturnValue#ERROR}
+     */
+    public Map<Integer, PluginReturnValue> run(List<Integer> processIds) throws InterruptedException {
+        Map<Integer, PluginReturnValue> results = new LinkedHashMap<>();
+        Deque<Future<PluginReturnValue>> pending = new ArrayDeque<>();
+        Deque<Integer> pendingIds = new ArrayDeque<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        long start = System.currentTimeMillis();
+        try {
+            for (Integer processId : processIds) {
+                // back-pressure: wait for the oldest process before more processes are submitted
+                if (pending.size() >= parallelism + queueSize) {
+                    collect(pendingIds.poll(), pending.poll(), results, processIds.size());
+                }
+                pendingIds.add(processId);
+                pending.add(executor.submit(() -> task.enrich(processId)));
+            }
+            while (!pending.isEmpty()) {
+                collect(pendingIds.poll(), pending.poll(), results, processIds.size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long failed = results.values().stream().filter(r -> r == PluginReturnValue.ERROR).count();
+        log.info("Enriched {} processes in {} s, {} failed", results.size(), (System.currentTimeMillis() - start) / 1000, failed);
+        return results;
+    }
+
+    private void collect(Integer processId, Future<PluginReturnValue> future, Map<Integer, PluginReturnValue> results, int total)
+            throws InterruptedException {
+        try {
+            results.put(processId, future.get());
+        } catch (ExecutionException e) {
+            log.error("MIX enrichment of process {} failed", processId, e.getCause());
+            results.put(processId, PluginReturnValue.ERROR);
+        }
+        if (results.size() % 100 == 0) {
+            log.info("Enriched {} of {} processes", results.size(), total);
+        }
+    }
+
+    private static PluginReturnValue enrich(String stepTitle, int processId) {
+        Process process = ProcessManager.getProcessById(processId);
+        if (process == null) {
+            log.warn("Process {} does not exist", processId);
+            return PluginReturnValue.ERROR;
+        }
+        Step step = process.getSchritte()
+                .stream()
+                .filter(s -> stepTitle.equals(s.getTitel()))
+                .findFirst()
+                .orElse(null);
+        if (step == null) {
+            log.warn("Process {} has no step {}", processId, stepTitle);
+            return PluginReturnValue.ERROR;
+        }
+
+        MixMetadataEnrichmentPlugin plugin = new MixMetadataEnrichmentPlugin();
+        plugin.initialize(step, "");
+        return plugin.run();
+    }
+}
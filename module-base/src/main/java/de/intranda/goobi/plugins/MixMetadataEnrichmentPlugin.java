@@ -24,18 +24,10 @@ import de.sub.goobi.helper.Helper;
 import de.sub.goobi.helper.NIOFileUtils;
 import de.sub.goobi.helper.StorageProvider;
 import de.sub.goobi.helper.VariableReplacer;
-import de.sub.goobi.helper.XmlTools;
 import de.sub.goobi.helper.exceptions.SwapException;
-import edu.harvard.hul.ois.jhove.App;
-import edu.harvard.hul.ois.jhove.JhoveBase;
-import edu.harvard.hul.ois.jhove.Module;
-import edu.harvard.hul.ois.jhove.OutputHandler;
-import lombok.Data;
 import lombok.Getter;
-import lombok.NonNull;
 import lombok.extern.log4j.Log4j2;
 import net.xeoh.plugins.base.annotations.PluginImplementation;
-import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.apache.commons.configuration.SubnodeConfiguration;
 import org.apache.commons.digester.plugins.PluginException;
 import org.goobi.beans.Step;
@@ -45,13 +37,8 @@ import org.goobi.production.enums.PluginReturnValue;
 import org.goobi.production.enums.PluginType;
 import org.goobi.production.enums.StepReturnValue;
 import org.goobi.production.plugin.interfaces.IStepPluginVersion2;
-import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.Namespace;
-import org.jdom2.filter.Filters;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.xpath.XPathExpression;
-import org.jdom2.xpath.XPathFactory;
 import ugh.dl.DigitalDocument;
 import ugh.dl.DocStruct;
 import ugh.dl.Fileformat;
@@ -62,41 +49,23 @@ import ugh.exceptions.ReadException;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.AbstractMap;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @PluginImplementation
 @Log4j2
 public class MixMetadataEnrichmentPlugin implements IStepPluginVersion2 {
 
-    @Data
-    class ExtraMapping {
-        private String source;
-        private String target;
-        private String transform;
-
-        private XPathExpression<Element> sourceXPathExpression;
-
-        public ExtraMapping(String source, String target, String transform) {
-            this.source = source;
-            this.target = target;
-            this.transform = transform;
-            this.sourceXPathExpression = XPathFactory.instance().compile(source, Filters.element(), null, NAMESPACE_JHOVE);
-        }
-
-        public Element find(Document doc) {
-            return this.sourceXPathExpression.evaluateFirst(doc);
-        }
-    }
-
     @Getter
     private String title = "intranda_step_mix_metadata_enrichment";
     @Getter
@@ -104,12 +73,62 @@ public class MixMetadataEnrichmentPlugin implements IStepPluginVersion2 {
     @Getter
     private File jhoveConfigFile;
     private String configuredFolderToScan;
+    private String engine;
+    private ModuleSelector moduleSelector;
+    private String remoteQueueDirectory;
+    private int remoteTimeout;
+    private int remoteLocalWorkers;
+    /**
+     * Parsers for the output of remote analyses, one per thread.
+     */
+    private final ThreadLocal<JhoveOutputParser> remoteParsers = ThreadLocal.withInitial(JhoveOutputParser::new);
+    private int threads;
+    private int queueSize;
+    private int ioThreads;
+    private String scheduling;
+    private boolean keepJhoveOutput;
+    private int checkpointInterval;
+    private String failureThreshold;
+    private boolean streamingTechMd;
+    private boolean deduplicateTechMd;
+    private boolean metricsJournal;
+    private boolean metricsJmx;
+    private String ioBufferSize;
+    private boolean ioReadAhead;
+    private long ioReadAheadSize;
+    private boolean ioStaging;
+    private String ioStagingDirectory;
+    /**
+     * Metrics of the current run.
+     */
+    private EnrichmentMetrics metrics;
+    /**
+     * Buffer size of the JHOVE analyses in the current run, chosen by the tuner if it is not null.
+     */
+    private int bufferSize;
+    private BufferSizeTuner bufferSizeTuner;
+    private boolean incremental;
+    private boolean incrementalHash;
+    private boolean cacheEnabled;
+    private String cacheDirectory;
+    private long cacheMaxSize;
+    private int cacheMemoryEntries;
     private List<ExtraMapping> extraMappings;
+    private Set<String> mappedPropertyNames;
+    /**
+     * True if an extra mapping uses an XPath expression that needs the complete JHOVE document.
+     */
+    private boolean jhoveDocumentRequired;
     private VariableReplacer variableReplacer;
 
 
-    private static final Namespace NAMESPACE_JHOVE = Namespace.getNamespace("jhove", "http://hul.harvard.edu/ois/xml/ns/jhove");
-    private static final Namespace NAMESPACE_MIX = Namespace.getNamespace("mix", "http://www.loc.gov/mix/v20");
+    /**
+     * Marker file of a JHOVE output folder whose run has not finished yet, it is removed when the run was successful.
+     */
+    private static final String JHOVE_OUTPUT_IN_PROGRESS = ".in_progress";
+    static final Namespace NAMESPACE_JHOVE = Namespace.getNamespace("jhove", "http://hul.harvard.edu/ois/xml/ns/jhove");
+    static final Namespace NAMESPACE_MIX = Namespace.getNamespace("mix", "http://www.loc.gov/mix/v20");
+    static final Namespace NAMESPACE_METS = Namespace.getNamespace("mets", "http://www.loc.gov/METS/");
 
     @Getter
     private String returnPath;
@@ -126,7 +145,40 @@ public class MixMetadataEnrichmentPlugin implements IStepPluginVersion2 {
             SubnodeConfiguration myconfig = ConfigPlugins.getProjectAndStepConfig(title, step);
             jhoveConfigFile = new File(myconfig.getString("jhoveConf", "/opt/digiverso/goobi/config/jhove/jhove.conf"));
             configuredFolderToScan = myconfig.getString("folder", "master");
-            extraMappings = parseExtraMappings(myconfig.configurationsAt("extraMappings"));
+            engine = myconfig.getString("engine", "jhove");
+            moduleSelector = new ModuleSelector(myconfig.configurationsAt("modules/module"));
+            remoteQueueDirectory = myconfig.getString("remote/@queue", "/opt/digiverso/goobi/tmp/mix_queue");
+            remoteTimeout = myconfig.getInt("remote/@timeout", 600);
+            remoteLocalWorkers = myconfig.getInt("remote/@localWorkers", 0);
+            threads = myconfig.getInt("threads", 1);
+            queueSize = myconfig.getInt("queueSize", 4 * threads);
+            ioThreads = myconfig.getInt("ioThreads", 0);
+            ioBufferSize = myconfig.getString("io/@bufferSize", String.valueOf(JhoveAnalyzer.DEFAULT_BUFFER_SIZE));
+            ioReadAhead = myconfig.getBoolean("io/@readAhead", false);
+            ioReadAheadSize = myconfig.getLong("io/@readAheadSize", 1024 * 1024);
+            ioStaging = myconfig.getBoolean("io/@staging", false);
+            ioStagingDirectory = myconfig.getString("io/@stagingDirectory", "/opt/digiverso/goobi/tmp/mix_staging");
+            scheduling = myconfig.getString("scheduling", "input");
+            keepJhoveOutput = myconfig.getBoolean("keepJhoveOutput", false);
+            checkpointInterval = myconfig.getInt("checkpointInterval", 0);
+            failureThreshold = myconfig.getString("failureThreshold", "0");
+            streamingTechMd = myconfig.getBoolean("streamingTechMd", false);
+            deduplicateTechMd = myconfig.getBoolean("deduplicateTechMd", false);
+            metricsJournal = myconfig.getBoolean("metrics/@journal", false);
+            metricsJmx = myconfig.getBoolean("metrics/@jmx", false);
+            incremental = myconfig.getBoolean("incremental", false);
+            incrementalHash = myconfig.getBoolean("incremental/@hash", false);
+            cacheEnabled = myconfig.getBoolean("cache/@enabled", false);
+            cacheDirectory = myconfig.getString("cache/directory", "/opt/digiverso/goobi/tmp/mix_cache");
+            cacheMaxSize = myconfig.getLong("cache/maxSize", 1024);
+            cacheMemoryEntries = myconfig.getInt("cache/memoryEntries", 1000);
+            extraMappings = ExtraMapping.forConfiguration(step.getProzess().getProjekt().getTitel(), step.getTitel(),
+                    myconfig.configurationsAt("extraMappings"));
+            mappedPropertyNames = extraMappings.stream()
+                    .map(ExtraMapping::getPropertyName)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            jhoveDocumentRequired = extraMappings.stream().anyMatch(mapping -> mapping.getPropertyName() == null);
             log.info("MixMetadataEnrichmentPlugin step plugin initialized");
         } catch (PluginException e) {
             log.error(e.getMessage());
@@ -144,18 +196,6 @@ public class MixMetadataEnrichmentPlugin implements IStepPluginVersion2 {
         }
     }
 
-    private @NonNull List<ExtraMapping> parseExtraMappings(List<HierarchicalConfiguration> config) {
-        return config.stream()
-                .flatMap(c -> c.configurationsAt("value").stream())
-                .map(c -> new ExtraMapping(
-                                c.getString("@source"),
-                                c.getString("@target"),
-                                c.getString("@transform")
-                        )
-                )
-                .collect(Collectors.toList());
-    }
-
     @Override
     public PluginGuiType getPluginGuiType() {
         return PluginGuiType.NONE;
@@ -202,109 +242,308 @@ public class MixMetadataEnrichmentPlugin implements IStepPluginVersion2 {
         boolean successful = true;
         // your logic goes here
 
+        long runStart = System.nanoTime();
+        InMemoryEnrichmentMetrics runMetrics = new InMemoryEnrichmentMetrics();
+        metrics = metricsJmx ? EnrichmentMetrics.combine(runMetrics, JmxEnrichmentMetrics.getInstance()) : runMetrics;
+        CheckpointJournal journal = null;
         try {
-            Calendar calendar = Calendar.getInstance();
-            App app = new App(MixMetadataEnrichmentPlugin.class.getSimpleName(), "1.0",
-                    new int[]{calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH)}, "jHove", "");
-
-            JhoveBase jhoveBase = new JhoveBase();
-
-            jhoveBase.init(jhoveConfigFile.getAbsolutePath(), null);
-            Path outputPath = Paths.get(getStep().getProzess().getProcessDataDirectory(), "mix_metadata", System.currentTimeMillis() + "_jhove");
-            Files.createDirectories(outputPath);
-
-            List<AbstractMap.SimpleEntry<String, String>> inputOutputList = new ArrayList<>();
-
-            Module module = jhoveBase.getModule(null);
-            OutputHandler xmlHandler = jhoveBase.getHandler("XML");
-
-            jhoveBase.setEncoding("utf-8");
-            jhoveBase.setBufferSize(4096);
-            jhoveBase.setChecksumFlag(false);
-            jhoveBase.setShowRawFlag(true);
-            jhoveBase.setSignatureFlag(false);
-            List<Path> filesToAnalyze = new ArrayList<>();
+            Path mixMetadataDirectory = Paths.get(getStep().getProzess().getProcessDataDirectory(), "mix_metadata");
+            // the JHOVE output is only written to disk if it is kept for auditing, otherwise it is parsed in memory
+            Path outputPath = null;
+            if (keepJhoveOutput) {
+                removeIncompleteJhoveOutput(mixMetadataDirectory);
+                outputPath = mixMetadataDirectory.resolve(System.currentTimeMillis() + "_jhove");
+                Files.createDirectories(outputPath);
+                Files.createFile(outputPath.resolve(JHOVE_OUTPUT_IN_PROGRESS));
+            }
 
             Path folderToAnalyze = determineFolderToAnalyze();
             log.trace("Performing analysis in the folder: {}", folderToAnalyze.toString());
+            Path stagingPath = configureIo(folderToAnalyze);
 
-            filesToAnalyze.addAll(StorageProvider.getInstance().listFiles(folderToAnalyze.toString(), NIOFileUtils.imageNameFilter));
+            long start = System.nanoTime();
+            List<Path> allFiles = new ArrayList<>(StorageProvider.getInstance().listFiles(folderToAnalyze.toString(), NIOFileUtils.imageNameFilter));
+            metrics.recordPhase(EnrichmentMetrics.Phase.LIST_FILES, System.nanoTime() - start);
+            List<Path> filesToAnalyze = allFiles;
 
-            for (Path file : filesToAnalyze) {
-                String inputName = file.getFileName().toString();
-                String outputName = inputName.substring(0, inputName.lastIndexOf('.')) + ".xml";
-                Path fOutputPath = outputPath.resolve(outputName);
-                inputOutputList.add(new AbstractMap.SimpleEntry<>(file.toString(), fOutputPath.toString()));
-            }
+            MixExtractor mixExtractor = new MixExtractor(extraMappings, new MixElementSorter(), metrics);
 
-            for (AbstractMap.SimpleEntry<String, String> se : inputOutputList) {
-                jhoveBase.dispatch(app, module, null, xmlHandler, se.getValue(), new String[]{se.getKey()});
-            }
+            // the initialized engines are reused across executions, each worker takes its own one for every image
+            JhoveAnalyzerPool analyzers = JhoveAnalyzerPool.forConfiguration(jhoveConfigFile);
 
-            // After all jhove metadata files have been generated, populate the mets file
-            Fileformat ff = getStep().getProzess().readMetadataFile();
-            DigitalDocument dd = ff.getDigitalDocument();
-            DocStruct physical = dd.getPhysicalDocStruct();
-            SAXBuilder jdomBuilder = XmlTools.getSAXBuilder();
-            MixElementSorter mixElementSorter = new MixElementSorter();
+            // cached, checkpointed and incrementally skipped results are only valid for the same engine and mapping configuration
+            String resultContext = null;
+            if (cacheEnabled || checkpointInterval > 0 || incremental) {
+                resultContext = MixResultCache.contextDigest(engine, analyzers.getEngineId(), moduleSelector.signature(),
+                        ExtraMapping.signature(extraMappings));
+            }
 
-            for (AbstractMap.SimpleEntry<String, String> se : inputOutputList) {
-                Document jdomDocument = jdomBuilder.build(se.getValue());
+            // in incremental mode the mets file is needed up front to decide which images have to be analyzed again
+            Fileformat ff = null;
+            DigitalDocument dd = null;
+            PageIndex pageIndex = null;
+            EnrichmentManifest manifest = null;
+            Map<Path, EnrichmentManifest.Entry> currentState = new HashMap<>();
+            if (incremental) {
+                start = System.nanoTime();
+                ff = getStep().getProzess().readMetadataFile();
+                dd = ff.getDigitalDocument();
+                pageIndex = new PageIndex(dd.getPhysicalDocStruct());
+                metrics.recordPhase(EnrichmentMetrics.Phase.METS_READ, System.nanoTime() - start);
+                manifest = EnrichmentManifest.load(mixMetadataDirectory.resolve(EnrichmentManifest.FILE_NAME), incrementalHash, resultContext);
+                filesToAnalyze = selectChangedFiles(allFiles, manifest, currentState, dd, pageIndex);
+                metrics.recordSkipped(allFiles.size() - filesToAnalyze.size());
+            }
 
-                XPathFactory xPathFactory = XPathFactory.instance();
+            FormatCostModel costModel = FormatCostModel.getShared();
+            if ("cost".equals(scheduling) && filesToAnalyze.size() > 1) {
+                // the most expensive images are started first, so the workers finish at about the same time
+                Map<Path, Long> sizes = new HashMap<>();
+                for (Path file : filesToAnalyze) {
+                    EnrichmentManifest.Entry state = currentState.get(file);
+                    sizes.put(file, state != null ? state.getSize() : Files.size(file));
+                }
+                filesToAnalyze = costModel.mostExpensiveFirst(filesToAnalyze, sizes);
+            }
 
-                XPathExpression<Element> mixXPath = xPathFactory.compile("//*[local-name()='mix']", Filters.element());
+            int workers = Math.max(1, Math.min(threads, filesToAnalyze.size()));
+            log.debug("Analyzing {} files with {} JHOVE workers", filesToAnalyze.size(), workers);
 
-                List<Element> resultSet = mixXPath.evaluate(jdomDocument);
+            MixResultCache cache = null;
+            if (cacheEnabled) {
+                cache = MixResultCache.forDirectory(Paths.get(cacheDirectory), cacheMaxSize * 1024 * 1024, cacheMemoryEntries);
+            }
+            if (checkpointInterval > 0) {
+                journal = CheckpointJournal.open(mixMetadataDirectory, resultContext, checkpointInterval);
+            }
 
-                if (resultSet.isEmpty()) {
-                    log.warn("No MIX metadata found for image: {}", se.getKey());
-                    continue;
+            // the header reader is stateless and shared by all workers
+            ImageHeaderReader headerReader = "header".equals(engine) ? new ImageHeaderReader() : null;
+            // with the remote engine JHOVE runs in worker processes, waiting for them is part of the I/O bound work
+            RemoteJobQueue remoteQueue = "remote".equals(engine) ? new RemoteJobQueue(Paths.get(remoteQueueDirectory)) : null;
+            if (remoteQueue != null) {
+                // files of crashed workers and servers, nobody waits for them after the timeout
+                int swept = remoteQueue.sweep(2 * remoteTimeout * 1000L);
+                if (swept > 0) {
+                    log.info("Removed {} stale files from the remote job queue {}", swept, remoteQueueDirectory);
                 }
+            }
 
-                if (resultSet.size() != 1) {
-                    log.error("Only a single MIX metadata result expected, found: {}", resultSet.size());
-                    return PluginReturnValue.ERROR;
+            Path auditPath = outputPath;
+            MixResultCache resultCache = cache;
+            String resultCacheContext = resultContext;
+            CheckpointJournal resumeJournal = journal;
+            WorkScheduler scheduler = ioThreads > 0 ? WorkScheduler.split(workers, ioThreads) : WorkScheduler.direct(workers);
+            ImagePipeline.ImageTask<MixResult> analysis = file -> {
+                // everything up to the analysis is I/O bound, the analysis itself runs on the CPU pool of the scheduler
+                long fileStart = System.nanoTime();
+                EnrichmentManifest.Entry state = currentState.get(file);
+                long fileSize = state != null ? state.getSize() : Files.size(file);
+                if (resumeJournal != null) {
+                    // images finished by an interrupted run are taken from the journal as long as they were not modified since
+                    long lastModified = state != null ? state.getLastModified() : Files.getLastModifiedTime(file).toMillis();
+                    Element resumed = resumeJournal.lookup(file, fileSize, lastModified);
+                    if (resumed != null) {
+                        metrics.recordFile(fileSize, System.nanoTime() - fileStart);
+                        return new MixResult(file, resumed, MixResult.Source.CHECKPOINT);
+                    }
+                }
+                String cacheKey = null;
+                boolean contentRead = false;
+                if (resultCache != null) {
+                    // reuse the digest of the incremental mode if it was already computed
+                    long phaseStart = System.nanoTime();
+                    String digest = state != null && state.getHash() != null ? state.getHash() : FileDigest.sha256(file);
+                    contentRead = true;
+                    cacheKey = MixResultCache.key(digest, resultCacheContext);
+                    long lookupStart = System.nanoTime();
+                    metrics.recordPhase(EnrichmentMetrics.Phase.DIGEST, lookupStart - phaseStart);
+                    Element cached = resultCache.get(cacheKey);
+                    metrics.recordPhase(EnrichmentMetrics.Phase.CACHE, System.nanoTime() - lookupStart);
+                    if (cached != null) {
+                        metrics.recordFile(fileSize, System.nanoTime() - fileStart);
+                        return new MixResult(file, cached, MixResult.Source.CACHE);
+                    }
                 }
 
-                Element result = resultSet.get(0);
+                JhoveResult headerResult = null;
+                if (headerReader != null) {
+                    long phaseStart = System.nanoTime();
+                    headerResult = headerReader.read(file);
+                    metrics.recordPhase(EnrichmentMetrics.Phase.HEADER, System.nanoTime() - phaseStart);
+                }
+                if (headerResult == null && remoteQueue != null) {
+                    headerResult = analyzeRemotely(remoteQueue, file);
+                }
+                Path stagedFile = null;
+                if (headerResult == null && stagingPath != null) {
+                    // JHOVE reads a local copy, the remote mount is only read once sequentially
+                    stagedFile = stage(file, stagingPath);
+                } else if (headerResult == null && (scheduler.isSplit() || ioReadAhead) && !contentRead) {
+                    scheduler.prefetch(file, ioReadAheadSize);
+                }
+                JhoveResult readerResult = headerResult;
+                Path analysisFile = stagedFile != null ? stagedFile : file;
+                Element mix;
+                try {
+                    mix = scheduler.compute(() -> {
+                        JhoveResult jhoveResult = readerResult;
+                        if (jhoveResult == null) {
+                            // full JHOVE analysis, also the fallback for formats the header reader can't handle
+                            Path auditFile = auditPath == null ? null : auditPath.resolve(jhoveOutputName(file));
+                            // only local JHOVE analyses are timed for the ordering, without the wait for a CPU slot
+                            long analysisStart = System.nanoTime();
+                            jhoveResult = analyzeWithJhove(analyzers, analysisFile, fileSize, auditFile);
+                            costModel.record(file, fileSize, System.nanoTime() - analysisStart);
+                        }
+                        return mixExtractor.extract(file, jhoveResult);
+                    });
+                } finally {
+                    if (stagedFile != null) {
+                        Files.deleteIfExists(stagedFile);
+                    }
+                }
+                if (resultCache != null && mix != null) {
+                    long phaseStart = System.nanoTime();
+                    resultCache.put(cacheKey, mix);
+                    metrics.recordPhase(EnrichmentMetrics.Phase.CACHE, System.nanoTime() - phaseStart);
+                }
+                metrics.recordFile(fileSize, System.nanoTime() - fileStart);
+                return new MixResult(file, mix, MixResult.Source.ANALYZED);
+            };
+            ErrorCollector errors = new ErrorCollector(ErrorCollector.parseThreshold(failureThreshold, filesToAnalyze.size()));
+            ImagePipeline.ImageTask<MixResult> task = file -> {
+                try {
+                    return analysis.process(file);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    // a single faulty image must not discard the results of all other images
+                    errors.add(file, e);
+                    return new MixResult(file, null, MixResult.Source.FAILED);
+                }
+            };
+
+            // in the split mode the window must be large enough for the outstanding reads
+            int window = scheduler.isSplit() ? Math.max(queueSize, ioThreads) : Math.max(workers, queueSize);
+            // in the streaming mode the MIX elements are collected in a file and only added while the mets file is written
+            try (scheduler;
+                    RemoteJhoveWorker localWorker = remoteQueue != null && remoteLocalWorkers > 0
+                            ? new RemoteJhoveWorker(remoteQueue, jhoveConfigFile, remoteLocalWorkers)
+                            : null;
+                    TechMdSpool spool = streamingTechMd ? new TechMdSpool(mixMetadataDirectory) : null;
+                    ImagePipeline<MixResult> pipeline = new ImagePipeline<>(filesToAnalyze, scheduler.getIoExecutor(), window, task)) {
+                // the first images are already analyzed while the mets file is read
+                pipeline.start();
+                if (ff == null) {
+                    start = System.nanoTime();
+                    ff = getStep().getProzess().readMetadataFile();
+                    dd = ff.getDigitalDocument();
+                    pageIndex = new PageIndex(dd.getPhysicalDocStruct());
+                    metrics.recordPhase(EnrichmentMetrics.Phase.METS_READ, System.nanoTime() - start);
+                }
+                if (spool != null) {
+                    spool.reserveIds(dd);
+                }
+                // sections shared by several pages, e.g. from a deduplicated run, must not be replaced for a single page
+                TechMdDeduplicator deduplicator = new TechMdDeduplicator(dd);
+
+                int cacheHits = 0;
+                while (pipeline.hasNext()) {
+                    MixResult mixResult = pipeline.next();
+                    if (mixResult.isFromCache()) {
+                        cacheHits++;
+                        metrics.recordCacheHit();
+                    }
+                    if (mixResult.getSource() == MixResult.Source.FAILED) {
+                        if (errors.isExceeded()) {
+                            log.error("Aborting the analysis after {} failed images, the results so far are saved", errors.size());
+                            break;
+                        }
+                        continue;
+                    }
+                    if (mixResult.getMix() == null) {
+                        metrics.recordSkipped(1);
+                        continue;
+                    }
+                    if (journal != null && mixResult.getSource() != MixResult.Source.CHECKPOINT) {
+                        Path image = mixResult.getImage();
+                        EnrichmentManifest.Entry state = currentState.get(image);
+                        journal.append(image, state != null ? state.getSize() : Files.size(image),
+                                state != null ? state.getLastModified() : Files.getLastModifiedTime(image).toMillis(), mixResult.getMix());
+                    }
 
-                for (ExtraMapping em : extraMappings) {
-                    Element source = em.find(jdomDocument);
-                    if (source == null) {
+                    // Find relevant page element
+                    start = System.nanoTime();
+                    DocStruct page = pageIndex.find(mixResult.getImage().getFileName().toString());
+                    metrics.recordPhase(EnrichmentMetrics.Phase.PAGE_LOOKUP, System.nanoTime() - start);
+                    if (page == null) {
+                        log.warn("Can't save MIX metadata to Mets file, file reference does not exist in Mets file: {}", mixResult.getImage());
                         continue;
                     }
-                    String value = source.getText();
-                    Element target = getOrCreateTarget(result, em.target, NAMESPACE_MIX);
-                    saveTransformedValue(target, value, em.transform);
+
+                    start = System.nanoTime();
+                    String techMdId;
+                    if (deduplicateTechMd) {
+                        techMdId = addSharedTechMd(dd, page, mixResult.getMix(), spool, deduplicator);
+                    } else if (spool != null) {
+                        techMdId = spoolTechMd(page, mixResult.getMix(), spool, deduplicator);
+                    } else {
+                        techMdId = addOrReplaceTechMd(dd, page, mixResult.getMix(), deduplicator);
+                    }
+                    metrics.recordPhase(EnrichmentMetrics.Phase.TECHMD, System.nanoTime() - start);
+                    if (manifest != null) {
+                        manifest.put(currentState.get(mixResult.getImage()).withTechMdId(techMdId));
+                    }
                 }
 
-                mixElementSorter.fixOrder(result);
+                if (cacheEnabled) {
+                    log.info("{} of {} images were taken from the MIX cache", cacheHits, filesToAnalyze.size());
+                }
 
-                // Find relevant page element
-                String currentImageName = Paths.get(se.getKey()).getFileName().toString();
-                Optional<DocStruct> page = Optional.empty();
-                if (physical.getAllChildren() != null) {
-                    page = physical.getAllChildren().stream()
-                            .filter(p -> filePrefixEquals(p.getImageName(), currentImageName))
-                            .findFirst();
+                // the sections replaced by spooled ones are removed in one pass
+                deduplicator.removeDetached(dd);
+                int removed = deduplicator.removeUnreferenced(dd);
+                if (deduplicateTechMd) {
+                    log.info("Stored {} distinct MIX sections for {} pages, removed {} unused sections", deduplicator.getSections(),
+                            deduplicator.getPages(), removed);
+                } else if (removed > 0) {
+                    log.info("Removed {} shared MIX sections no page refers to any longer", removed);
                 }
 
-                if (page.isEmpty()) {
-                    log.warn("Can't save MIX metadata to Mets file, file reference does not exist in Mets file: {}", se.getKey());
-                    continue;
+                List<String> unmatchedPages = pageIndex.getUnmatchedPages();
+                if (!unmatchedPages.isEmpty()) {
+                    log.warn("No MIX metadata was created for {} pages of the Mets file: {}", unmatchedPages.size(), unmatchedPages);
                 }
 
-                Md md = new Md(result, Md.MdType.TECH_MD);
-                md.generateId();
-                dd.addTechMd(md);
-                page.get().setAdmId(md.getId());
+                start = System.nanoTime();
+                getStep().getProzess().writeMetadataFile(ff);
+                if (spool != null) {
+                    spool.mergeInto(Paths.get(getStep().getProzess().getMetadataFilePath()));
+                }
+                metrics.recordPhase(EnrichmentMetrics.Phase.METS_WRITE, System.nanoTime() - start);
             }
 
-            getStep().getProzess().writeMetadataFile(ff);
+            if (manifest != null) {
+                manifest.retainAll(allFiles.stream().map(Path::toString).collect(Collectors.toSet()));
+                manifest.save();
+            }
+            if (journal != null) {
+                // all results are in the mets file now, the next run starts from scratch
+                journal.delete();
+                journal = null;
+            }
+            if (outputPath != null) {
+                Files.deleteIfExists(outputPath.resolve(JHOVE_OUTPUT_IN_PROGRESS));
+            }
+            reportErrors(errors, mixMetadataDirectory, filesToAnalyze.size());
+            successful = !errors.isExceeded();
+            reportMetrics(runMetrics, System.nanoTime() - runStart);
         } catch (Exception e) {
             handleException(e);
             successful = false;
+        } finally {
+            closeJournal(journal);
         }
 
         log.info("MixMetadataEnrichmentPlugin step plugin executed");
@@ -314,60 +553,208 @@ public class MixMetadataEnrichmentPlugin implements IStepPluginVersion2 {
         return PluginReturnValue.FINISH;
     }
 
-    private void saveTransformedValue(Element element, String value, String transform) {
-        if (transform == null || transform.isBlank()) {
-            element.setText(value);
-            return;
+    /**
+     * Determines the images that are new or changed since the last run, or whose techMD section is missing in the mets file.
+     */
+    private List<Path> selectChangedFiles(List<Path> files, EnrichmentManifest manifest, Map<Path, EnrichmentManifest.Entry> currentState,
+            DigitalDocument dd, PageIndex pageIndex) throws IOException {
+        List<Path> changedFiles = new ArrayList<>();
+        Set<String> techMdIds = dd.getTechMds() == null ? Set.of() : dd.getTechMds().stream().map(Md::getId).collect(Collectors.toSet());
+        for (Path file : files) {
+            EnrichmentManifest.Entry current = manifest.describe(file);
+            currentState.put(file, current);
+            EnrichmentManifest.Entry previous = manifest.get(file.toString());
+            String imageName = file.getFileName().toString();
+            if (previous != null && previous.hasSameContent(current) && isLinked(techMdIds, pageIndex.lookup(imageName), previous.getTechMdId())) {
+                // mark the page as linked, it keeps its techMD section of the last run
+                pageIndex.find(imageName);
+                continue;
+            }
+            changedFiles.add(file);
         }
-        switch (transform) {
-            case "rational2real" -> element.setText(calculateDivision(value));
-            case "rational2rationalType" -> element.addContent(generateRationalTypeElement(value));
-            default -> element.setText(calculateDivision(value));
+        log.info("{} of {} images are new or changed since the last run", changedFiles.size(), files.size());
+        return changedFiles;
+    }
+
+    private static boolean isLinked(Set<String> techMdIds, DocStruct page, String techMdId) {
+        return page != null && techMdId != null && TechMdDeduplicator.admIds(page).contains(techMdId) && techMdIds.contains(techMdId);
+    }
+
+    /**
+     * Adds the MIX element as new techMD section to the page. If the page already references a MIX section of its own, it is replaced in place.
+     * Sections of other metadata the page refers to are never replaced.
+     *
+     * @return the id of the techMD section
+     */
+    private String addOrReplaceTechMd(DigitalDocument dd, DocStruct page, Element mix, TechMdDeduplicator sections) {
+        Md md = new Md(mix, Md.MdType.TECH_MD);
+        String currentId = sections.findMixId(page);
+        String existingId = sections.exclusiveId(currentId);
+        if (existingId != null) {
+            md.setId(existingId);
+            sections.replace(dd, md);
+            return existingId;
         }
+        md.generateId();
+        sections.add(dd, md);
+        TechMdDeduplicator.replaceAdmId(page, currentId, md.getId());
+        return md.getId();
     }
 
-    private String calculateDivision(String value) {
-        if (!value.contains("/")) {
-            return value;
+    /**
+     * Collects the MIX element in the spool instead of the digital document. An existing MIX section of the page alone is removed from the
+     * document at the end of the run, its id is reused for the new section.
+     *
+     * @return the id of the techMD section
+     */
+    private String spoolTechMd(DocStruct page, Element mix, TechMdSpool spool, TechMdDeduplicator sections) throws IOException {
+        String currentId = sections.findMixId(page);
+        String existingId = sections.exclusiveId(currentId);
+        String id;
+        if (existingId != null) {
+            sections.detach(existingId);
+            id = existingId;
+        } else {
+            id = spool.newId();
+            TechMdDeduplicator.replaceAdmId(page, currentId, id);
         }
-        String[] parts = value.split("/");
-        double a = Double.parseDouble(parts[0]);
-        double b = Double.parseDouble(parts[1]);
-        double result = a / b;
-        return "" + result;
+        spool.add(id, mix);
+        return id;
     }
 
-    private List<Element> generateRationalTypeElement(String value) {
-        if (!value.contains("/")) {
-            throw new IllegalArgumentException("Unsupported value \"" + value + "\"");
+    /**
+     * Stores the MIX element only if no identical one was stored in this run, otherwise the page is pointed to the existing section.
+     *
+     * @return the id of the techMD section
+     */
+    private String addSharedTechMd(DigitalDocument dd, DocStruct page, Element mix, TechMdSpool spool, TechMdDeduplicator deduplicator)
+            throws IOException {
+        String digest = deduplicator.digest(mix);
+        String id = deduplicator.lookup(digest);
+        if (id == null) {
+            if (spool != null) {
+                id = spool.newId();
+                spool.add(id, mix);
+            } else {
+                Md md = new Md(mix, Md.MdType.TECH_MD);
+                md.generateId();
+                deduplicator.add(dd, md);
+                id = md.getId();
+            }
+            deduplicator.register(digest, id);
         }
-        String[] parts = value.split("/");
-        Element numerator = new Element("numerator", NAMESPACE_MIX);
-        numerator.setText(parts[0]);
-        Element denominator = new Element("denominator", NAMESPACE_MIX);
-        denominator.setText(parts[1]);
-        return List.of(numerator, denominator);
+        deduplicator.link(page, id);
+        return id;
     }
 
-    private Element getOrCreateTarget(Element result, String target, Namespace namespace) {
-        String[] parts = target.split("/");
-        Element currentElement = result;
-        for (String currentPart : parts) {
-            Optional<Element> nextElement = currentElement.getChildren().stream()
-                    .filter(e -> e.getName().equals(currentPart))
-                    .findFirst();
-            if (nextElement.isEmpty()) {
-                Element newChild = new Element(currentPart, namespace);
-                currentElement.addContent(newChild);
-                nextElement = Optional.of(newChild);
+    /**
+     * Analyzes an image with the JHOVE module selected for it. If the selected module does not provide MIX metadata, e.g. because the file
+     * extension does not match the content, the image is analyzed again with automatic format detection.
+     */
+    private JhoveResult analyzeWithJhove(JhoveAnalyzerPool analyzers, Path file, long fileSize, Path auditFile) throws Exception {
+        JhoveAnalyzer analyzer = analyzers.acquire();
+        try {
+            analyzer.setBufferSize(bufferSizeTuner != null ? bufferSizeTuner.next() : bufferSize);
+            String moduleName = moduleSelector.select(file);
+            JhoveResult jhoveResult = analyzeWithJhove(analyzer, file, fileSize, moduleName, auditFile);
+            if (moduleName != null && jhoveResult.getMixElements().isEmpty()) {
+                log.debug("JHOVE module {} did not provide MIX metadata for {}, detecting the format", moduleName, file);
+                jhoveResult = analyzeWithJhove(analyzer, file, fileSize, null, auditFile);
             }
-            currentElement = nextElement.orElseThrow();
+            return jhoveResult;
+        } finally {
+            analyzers.release(analyzer);
         }
-        return currentElement;
     }
 
-    private boolean filePrefixEquals(String a, String b) {
-        return a.substring(0, a.lastIndexOf('.')).equals(b.substring(0, b.lastIndexOf('.')));
+    private JhoveResult analyzeWithJhove(JhoveAnalyzer analyzer, Path file, long fileSize, String moduleName, Path auditFile) throws Exception {
+        long start = System.nanoTime();
+        // the output is parsed while JHOVE writes it, so both are part of the JHOVE phase. Without XPath mappings only the MIX subtree and the
+        // mapped properties are materialized
+        JhoveResult jhoveResult = analyzer.analyze(file, moduleName, auditFile, mappedPropertyNames, jhoveDocumentRequired);
+        long analysisNanos = System.nanoTime() - start;
+        metrics.recordPhase(EnrichmentMetrics.Phase.JHOVE, analysisNanos);
+        if (bufferSizeTuner != null) {
+            bufferSizeTuner.record(analyzer.getBufferSize(), fileSize, analysisNanos);
+        }
+        return jhoveResult;
+    }
+
+    /**
+     * Analyzes an image in a {@link RemoteJhoveWorker}, with the same module selection and fallback as {@link #analyzeWithJhove}.
+     */
+    private JhoveResult analyzeRemotely(RemoteJobQueue queue, Path file) throws Exception {
+        String moduleName = moduleSelector.select(file);
+        JhoveResult jhoveResult = analyzeRemotely(queue, file, moduleName);
+        if (moduleName != null && jhoveResult.getMixElements().isEmpty()) {
+            log.debug("JHOVE module {} did not provide MIX metadata for {}, detecting the format", moduleName, file);
+            jhoveResult = analyzeRemotely(queue, file, null);
+        }
+        return jhoveResult;
+    }
+
+    private JhoveResult analyzeRemotely(RemoteJobQueue queue, Path file, String moduleName) throws Exception {
+        long start = System.nanoTime();
+        String jhoveOutput = queue.analyze(file, moduleName, remoteTimeout * 1000L);
+        long parseStart = System.nanoTime();
+        metrics.recordPhase(EnrichmentMetrics.Phase.JHOVE, parseStart - start);
+        JhoveResult jhoveResult = remoteParsers.get().read(jhoveOutput, mappedPropertyNames, jhoveDocumentRequired);
+        metrics.recordPhase(EnrichmentMetrics.Phase.PARSE, System.nanoTime() - parseStart);
+        return jhoveResult;
+    }
+
+    /**
+     * Determines the buffer size of the JHOVE analyses and logs the I/O settings of the run.
+     *
+     * @return the folder for local copies of the images, null if they are not staged
+     */
+    private Path configureIo(Path folderToAnalyze) throws IOException {
+        bufferSizeTuner = null;
+        bufferSize = JhoveAnalyzer.DEFAULT_BUFFER_SIZE;
+        if ("auto".equals(ioBufferSize)) {
+            bufferSizeTuner = BufferSizeTuner.forLocation(folderToAnalyze);
+        } else {
+            int configuredSize = 0;
+            try {
+                configuredSize = Integer.parseInt(ioBufferSize.trim());
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            if (configuredSize > 0) {
+                bufferSize = configuredSize;
+            } else {
+                log.warn("Invalid buffer size '{}', using {} bytes", ioBufferSize, bufferSize);
+            }
+        }
+        Path stagingPath = ioStaging ? Files.createDirectories(Paths.get(ioStagingDirectory)) : null;
+        log.info("JHOVE I/O settings for {}: buffer size {}, read-ahead {} of {}, staging {}", folderToAnalyze,
+                bufferSizeTuner != null ? "auto for " + bufferSizeTuner.getLocation() + ", currently " + bufferSizeTuner.getCurrent() : bufferSize,
+                ioReadAhead, ioReadAheadSize > 0 ? ioReadAheadSize + " bytes" : "the whole file", stagingPath != null ? stagingPath : "off");
+        return stagingPath;
+    }
+
+    /**
+     * Copies the image into the staging folder, the copy keeps the file extension.
+     */
+    private static Path stage(Path file, Path stagingPath) throws IOException {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        Path stagedFile = Files.createTempFile(stagingPath, "stage", dot >= 0 ? fileName.substring(dot) : "");
+        try {
+            Files.copy(file, stagedFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(stagedFile);
+            throw e;
+        }
+        return stagedFile;
+    }
+
+    /**
+     * @return the name of the file the JHOVE output of the image is written to in the audit folder
+     */
+    private String jhoveOutputName(Path file) {
+        String inputName = file.getFileName().toString();
+        return inputName.substring(0, inputName.lastIndexOf('.')) + ".xml";
     }
 
     private Path determineFolderToAnalyze() throws IOException, SwapException {
@@ -383,6 +770,61 @@ public class MixMetadataEnrichmentPlugin implements IStepPluginVersion2 {
         };
     }
 
+    private void reportMetrics(InMemoryEnrichmentMetrics runMetrics, long wallNanos) {
+        String summary = runMetrics.summary(wallNanos);
+        log.info("MIX metadata enrichment of process {}: {}", getStep().getProzess().getId(), summary);
+        if (metricsJournal) {
+            Helper.addMessageToProcessJournal(getStep().getProzess().getId(), LogType.INFO, "MIX metadata enrichment: " + summary, "");
+        }
+    }
+
+    /**
+     * Keeps the journal of a failed run for the next run.
+     */
+    private void closeJournal(CheckpointJournal journal) {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("Could not close the checkpoint journal: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes the JHOVE output folders of interrupted runs, they still contain the in-progress marker. Folders without the marker are complete or
+     * were written by earlier versions of the plugin and are kept.
+     */
+    private void removeIncompleteJhoveOutput(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(directory, "*_jhove")) {
+            for (Path folder : folders) {
+                if (Files.exists(folder.resolve(JHOVE_OUTPUT_IN_PROGRESS))) {
+                    log.debug("Removing incomplete JHOVE output {}", folder);
+                    StorageProvider.getInstance().deleteDir(folder);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a single journal entry for all failed images and writes the error report, or removes the report of an earlier run.
+     */
+    private void reportErrors(ErrorCollector errors, Path directory, int images) throws IOException {
+        Path report = directory.resolve(ErrorCollector.REPORT_FILE_NAME);
+        if (errors.isEmpty()) {
+            Files.deleteIfExists(report);
+            return;
+        }
+        errors.writeReport(report);
+        String message = "MIX metadata could not be created for " + errors.size() + " of " + images + " images, see mix_metadata/"
+                + ErrorCollector.REPORT_FILE_NAME + ": " + errors.summary(10);
+        log.warn(message);
+        Helper.addMessageToProcessJournal(getStep().getProzess().getId(), errors.isExceeded() ? LogType.ERROR : LogType.WARN, message, "");
+    }
+
     private void handleException(Exception e) {
         log.error(e);
         Helper.addMessageToProcessJournal(getStep().getProzess().getId(), LogType.ERROR, "The metadata extraction failed: " + e.getMessage(), "");
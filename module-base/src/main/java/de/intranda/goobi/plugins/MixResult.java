@@ -0,0 +1,48 @@
+package de.intranda.goobi.plugins;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jdom2.Element;
+
+import java.nio.file.Path;
+
+/**
+ * The outcome of the analysis of a single image.
+ */
+@Getter
+@AllArgsConstructor
+class MixResult {
+
+    /**
+     * Where the MIX element of an image comes from.
+     */
+    enum Source {
+        /**
+         * The image was analyzed in this run.
+         */
+        ANALYZED,
+        /**
+         * The MIX element was taken from the {@link MixResultCache} and the analysis was skipped.
+         */
+        CACHE,
+        /**
+         * The MIX element was taken from the {@link CheckpointJournal} of an interrupted run.
+         */
+        CHECKPOINT,
+        /**
+         * The analysis of the image failed, the error was reported to the {@link ErrorCollector}.
+         */
+        FAILED
+    }
+
+    private final Path image;
+    /**
+     * The detached and sorted MIX element, null if JHOVE did not deliver any MIX metadata for the image or the analysis failed.
+     */
+    private final Element mix;
+    private final Source source;
+
+    boolean isFromCache() {
+        return source == Source.CACHE;
+    }
+}
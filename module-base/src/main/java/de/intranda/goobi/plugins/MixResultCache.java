@@ -0,0 +1,255 @@
+package de.intranda.goobi.plugins;
+
+import de.sub.goobi.helper.XmlTools;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content addressed cache of final MIX elements, shared by all processes.
+ * <p>
+ * Entries are stored as XML files in a local directory. The key consists of the content digest of the image and a digest of everything else that
+ * influences the result, like the JHOVE version and configuration and the extra mappings. The directory is limited in size, the least recently used
+ * entries are evicted first. The most recently used entries are additionally kept in memory, a hit in memory also counts as use of the file.
+ * <p>
+ * Temporary files of writes interrupted by a crash are removed when the cache of a directory is opened.
+ */
+@Log4j2
+class MixResultCache {
+    /**
+     * Increase this whenever the MIX post-processing changes in a way that invalidates cached results.
+     */
+    static final String FORMAT_VERSION = "1";
+    /**
+     * Temporary files older than this are left over from a crash, younger ones may still be written by another process.
+     */
+    private static final long TEMP_FILE_MAX_AGE = 60 * 60 * 1000L;
+
+    private static final Map<Path, MixResultCache> INSTANCES = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final int memoryEntries;
+    private final Map<String, String> memory;
+    private final AtomicLong usedBytes = new AtomicLong(-1);
+
+    private MixResultCache(Path directory, long maxBytes, int memoryEntries) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.memoryEntries = memoryEntries;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the cache of the given directory. If the size limits changed, a new instance with the new limits replaces the previous one.
+     */
+    static MixResultCache forDirectory(Path directory, long maxBytes, int memoryEntries) {
+        return INSTANCES.compute(directory.toAbsolutePath().normalize(), (d, cache) -> {
+            if (cache != null && cache.maxBytes == maxBytes && cache.memoryEntries == memoryEntries) {
+                return cache;
+            }
+            MixResultCache opened = new MixResultCache(d, maxBytes, memoryEntries);
+            opened.removeTempFiles();
+            return opened;
+        });
+    }
+
+    /**
+     * Builds the cache key of an image.
+     *
+     * @param contentDigest hex encoded SHA-256 digest of the image
+     * @param contextDigest hex encoded digest of the engine and mapping configuration, see {@link #contextDigest(String...)}
+     */
+    static String key(String contentDigest, String contextDigest) {
+        return contentDigest + "-" + contextDigest.substring(0, 16);
+    }
+
+    static String contextDigest(String... parts) {
+        MessageDigest digest = FileDigest.newSha256();
+        digest.update(FORMAT_VERSION.getBytes(StandardCharsets.UTF_8));
+        for (String part : parts) {
+            digest.update((byte) 0);
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return a new copy of the cached MIX element or null if the key is unknown
+     */
+    public Element get(String key) {
+        String xml;
+        synchronized (memory) {
+            xml = memory.get(key);
+        }
+        Path file = entryFile(key);
+        if (xml != null) {
+            touch(file);
+        } else {
+            try {
+                xml = Files.readString(file, StandardCharsets.UTF_8);
+                touch(file);
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (IOException e) {
+                log.warn("Could not read cache entry {}: {}", file, e.getMessage());
+                return null;
+            }
+            synchronized (memory) {
+                memory.put(key, xml);
+            }
+        }
+        try {
+            return XmlTools.getSAXBuilder().build(new StringReader(xml)).detachRootElement();
+        } catch (JDOMException | IOException e) {
+            log.warn("Ignoring invalid cache entry {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    public void put(String key, Element mix) {
+        String xml = new XMLOutputter(Format.getCompactFormat()).outputString(mix);
+        synchronized (memory) {
+            memory.put(key, xml);
+        }
+        Path file = entryFile(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.writeString(tempFile, xml, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (addUsedBytes(Files.size(file)) > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            log.warn("Could not write cache entry {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * The modification time is the last access time for the eviction.
+     */
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // evicted from the directory, the entry is written again with the next put
+        } catch (IOException e) {
+            log.debug("Could not update the access time of cache entry {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void removeTempFiles() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        long limit = System.currentTimeMillis() - TEMP_FILE_MAX_AGE;
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.getFileName().toString().endsWith(".tmp"))::iterator) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < limit) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (NoSuchFileException e) {
+                    // moved into place concurrently
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not remove temporary files from the MIX cache in {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private Path entryFile(String key) {
+        // two hex characters as sub directory keep the directories small
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".xml");
+    }
+
+    private long addUsedBytes(long bytes) throws IOException {
+        if (usedBytes.get() < 0) {
+            synchronized (usedBytes) {
+                if (usedBytes.get() < 0) {
+                    usedBytes.set(listEntries().stream().mapToLong(CacheFile::getSize).sum());
+                    return usedBytes.get();
+                }
+            }
+        }
+        return usedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache uses at most 90% of its size limit.
+     */
+    private synchronized void evict() throws IOException {
+        List<CacheFile> entries = listEntries();
+        long size = entries.stream().mapToLong(CacheFile::getSize).sum();
+        long limit = maxBytes / 10 * 9;
+        entries.sort(Comparator.comparingLong(CacheFile::getLastModified));
+        int deleted = 0;
+        for (CacheFile entry : entries) {
+            if (size <= limit) {
+                break;
+            }
+            Files.deleteIfExists(entry.getFile());
+            size -= entry.getSize();
+            deleted++;
+        }
+        usedBytes.set(size);
+        log.debug("Evicted {} entries from the MIX cache in {}", deleted, directory);
+    }
+
+    private List<CacheFile> listEntries() throws IOException {
+        List<CacheFile> entries = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return entries;
+        }
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.getFileName().toString().endsWith(".xml"))::iterator) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    entries.add(new CacheFile(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                } catch (NoSuchFileException e) {
+                    // evicted concurrently
+                }
+            }
+        }
+        return entries;
+    }
+
+    @Value
+    private static class CacheFile {
+        Path file;
+        long size;
+        long lastModified;
+    }
+}
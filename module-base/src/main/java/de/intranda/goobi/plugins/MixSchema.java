@@ -0,0 +1,180 @@
+package de.intranda.goobi.plugins;
+
+import de.sub.goobi.helper.XmlTools;
+import lombok.Getter;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.Namespace;
+import org.jdom2.filter.Filters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Immutable model of the element order defined in {@code /mix.xsd}.
+ * <p>
+ * The schema is parsed once per class loader and shared by all plugin instances. For every complex type the order of its child elements is known,
+ * so elements are sorted within the context of their parent and not by a single flat list of all element names of the schema.
+ */
+final class MixSchema {
+    /**
+     * Rank of elements that are not declared in the schema. They are placed behind all known elements and keep their relative order.
+     */
+    static final int UNKNOWN_RANK = Integer.MAX_VALUE;
+
+    private static final Namespace NAMESPACE_XSD = Namespace.getNamespace("xsd", "http://www.w3.org/2001/XMLSchema");
+
+    private static volatile MixSchema instance;
+
+    /**
+     * The type of the {@code mix} root element.
+     */
+    @Getter
+    private final ElementType rootType;
+    /**
+     * Rank of all element names in document order of the schema, used for elements whose context is unknown.
+     */
+    private final Map<String, Integer> globalRank = new HashMap<>();
+
+    private final Map<String, Element> namedTypes = new HashMap<>();
+    private final Map<String, Element> namedGroups = new HashMap<>();
+    private final Map<Element, ElementType> parsedTypes = new IdentityHashMap<>();
+
+    /**
+     * Child element order of a single complex type of the schema.
+     */
+    static final class ElementType {
+        private final Map<String, Integer> childRank = new HashMap<>();
+        private final Map<String, ElementType> childTypes = new HashMap<>();
+
+        int rankOf(String childName) {
+            return childRank.getOrDefault(childName, UNKNOWN_RANK);
+        }
+
+        /**
+         * @return the type of the given child element or null if it has simple content or is not declared in this type
+         */
+        ElementType childType(String childName) {
+            return childTypes.get(childName);
+        }
+    }
+
+    public static MixSchema getInstance() throws IOException, JDOMException {
+        MixSchema schema = instance;
+        if (schema == null) {
+            synchronized (MixSchema.class) {
+                schema = instance;
+                if (schema == null) {
+                    try (InputStream in = MixSchema.class.getResourceAsStream("/mix.xsd")) {
+                        schema = new MixSchema(XmlTools.getSAXBuilder().build(in));
+                    }
+                    instance = schema;
+                }
+            }
+        }
+        return schema;
+    }
+
+    private MixSchema(Document xsd) {
+        Element root = xsd.getRootElement();
+        for (Element complexType : root.getChildren("complexType", NAMESPACE_XSD)) {
+            namedTypes.put(complexType.getAttributeValue("name"), complexType);
+        }
+        for (Element group : root.getChildren("group", NAMESPACE_XSD)) {
+            namedGroups.put(group.getAttributeValue("name"), group);
+        }
+
+        // element names are not unique in the schema, the first declaration determines the global rank
+        int rank = 0;
+        for (Element element : root.getDescendants(Filters.element("element", NAMESPACE_XSD))) {
+            globalRank.putIfAbsent(element.getAttributeValue("name"), rank++);
+        }
+
+        ElementType mixType = null;
+        for (Element element : root.getChildren("element", NAMESPACE_XSD)) {
+            if ("mix".equals(element.getAttributeValue("name"))) {
+                mixType = resolveElementType(element);
+            }
+        }
+        this.rootType = mixType;
+
+        // the schema document is only needed while building the model
+        namedTypes.clear();
+        namedGroups.clear();
+        parsedTypes.clear();
+    }
+
+    /**
+     * @return the rank of an element name in the whole schema, for elements whose parent type is unknown
+     */
+    int globalRankOf(String name) {
+        return globalRank.getOrDefault(name, UNKNOWN_RANK);
+    }
+
+    private ElementType resolveElementType(Element elementDeclaration) {
+        String typeName = elementDeclaration.getAttributeValue("type");
+        if (typeName != null) {
+            Element namedType = namedTypes.get(localName(typeName));
+            return namedType == null ? null : parseComplexType(namedType);
+        }
+        Element anonymousType = elementDeclaration.getChild("complexType", NAMESPACE_XSD);
+        return anonymousType == null ? null : parseComplexType(anonymousType);
+    }
+
+    private ElementType parseComplexType(Element complexType) {
+        ElementType type = parsedTypes.get(complexType);
+        if (type == null) {
+            type = new ElementType();
+            // register before collecting the children to support recursive types
+            parsedTypes.put(complexType, type);
+            collectChildElements(complexType, type);
+        }
+        return type;
+    }
+
+    private void collectChildElements(Element particle, ElementType type) {
+        for (Element child : particle.getChildren()) {
+            if (!NAMESPACE_XSD.equals(child.getNamespace())) {
+                continue;
+            }
+            switch (child.getName()) {
+                case "element" -> {
+                    String name = child.getAttributeValue("name");
+                    if (name != null && !type.childRank.containsKey(name)) {
+                        type.childRank.put(name, type.childRank.size());
+                        ElementType childType = resolveElementType(child);
+                        if (childType != null) {
+                            type.childTypes.put(name, childType);
+                        }
+                    }
+                }
+                case "extension" -> {
+                    // the content of the base type precedes the content of the extension
+                    String base = child.getAttributeValue("base");
+                    Element baseType = base == null ? null : namedTypes.get(localName(base));
+                    if (baseType != null) {
+                        collectChildElements(baseType, type);
+                    }
+                    collectChildElements(child, type);
+                }
+                case "group" -> {
+                    String ref = child.getAttributeValue("ref");
+                    Element group = ref == null ? null : namedGroups.get(localName(ref));
+                    collectChildElements(group != null ? group : child, type);
+                }
+                case "sequence", "choice", "all", "complexContent", "restriction" -> collectChildElements(child, type);
+                default -> {
+                    // annotations, attributes and simple content do not declare child elements
+                }
+            }
+        }
+    }
+
+    private static String localName(String qualifiedName) {
+        return qualifiedName.substring(qualifiedName.indexOf(':') + 1);
+    }
+}
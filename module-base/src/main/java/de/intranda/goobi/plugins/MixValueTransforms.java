@@ -0,0 +1,70 @@
+package de.intranda.goobi.plugins;
+
+import org.jdom2.Element;
+
+import java.util.List;
+
+/**
+ * The value transformations of the extra mappings.
+ */
+final class MixValueTransforms {
+
+    private MixValueTransforms() {
+    }
+
+    /**
+     * Writes the value into the element, transformed according to the {@code transform} attribute of the mapping.
+     *
+     * @throws IllegalArgumentException if the value can't be transformed
+     */
+    static void saveTransformedValue(Element element, String value, String transform) {
+        if (transform == null || transform.isBlank()) {
+            element.setText(value);
+            return;
+        }
+        switch (transform) {
+            case "rational2real" -> element.setText(calculateDivision(value));
+            case "rational2rationalType" -> element.addContent(generateRationalTypeElement(value));
+            case "apex2seconds" -> element.setText(apexToSeconds(value));
+            case "apex2fNumber" -> element.setText(apexToFNumber(value));
+            default -> element.setText(calculateDivision(value));
+        }
+    }
+
+    /**
+     * @return the quotient of a rational value, values without a slash are returned unchanged
+     */
+    static String calculateDivision(String value) {
+        if (!Rational.isRational(value)) {
+            return value;
+        }
+        return Double.toString(Rational.quotient(value));
+    }
+
+    static List<Element> generateRationalTypeElement(String value) {
+        Rational rational = Rational.parse(value);
+        Element numerator = new Element("numerator", MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+        numerator.setText(Long.toString(rational.getNumerator()));
+        Element denominator = new Element("denominator", MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+        denominator.setText(Long.toString(rational.getDenominator()));
+        return List.of(numerator, denominator);
+    }
+
+    /**
+     * Converts an APEX time value like the EXIF ShutterSpeedValue into the exposure time in seconds, {@code 2^-value}.
+     */
+    static String apexToSeconds(String value) {
+        return Double.toString(Math.pow(2, -apexValue(value)));
+    }
+
+    /**
+     * Converts an APEX aperture value like the EXIF ApertureValue into the f-number, {@code 2^(value/2)}.
+     */
+    static String apexToFNumber(String value) {
+        return Double.toString(Math.pow(2, apexValue(value) / 2));
+    }
+
+    private static double apexValue(String value) {
+        return Rational.isRational(value) ? Rational.quotient(value) : Double.parseDouble(value.trim());
+    }
+}
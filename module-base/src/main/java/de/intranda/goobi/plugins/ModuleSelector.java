@@ -0,0 +1,81 @@
+package de.intranda.goobi.plugins;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Selects the JHOVE module of an image by its file extension or MIME type.
+ * <p>
+ * Without a matching entry JHOVE tries the signatures of all configured modules, which is slow and not needed if the formats of a folder are known.
+ */
+@Log4j2
+class ModuleSelector {
+    private final Map<String, String> moduleByExtension = new HashMap<>();
+    private final Map<String, String> moduleByMimeType = new HashMap<>();
+
+    /**
+     * @param config the {@code <module>} elements of the configuration, each with the module name as text and the attributes {@code extension}
+     *            and {@code mimeType} containing comma separated lists
+     */
+    ModuleSelector(List<HierarchicalConfiguration> config) {
+        for (HierarchicalConfiguration module : config) {
+            String name = module.getString(".", "").trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            register(moduleByExtension, module.getString("@extension"), name);
+            register(moduleByMimeType, module.getString("@mimeType"), name);
+        }
+    }
+
+    private static void register(Map<String, String> map, String keys, String moduleName) {
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys.split(",")) {
+            if (!key.isBlank()) {
+                map.put(key.trim().toLowerCase(Locale.ROOT), moduleName);
+            }
+        }
+    }
+
+    /**
+     * @return all mappings in a stable order, they are part of the cache key
+     */
+    public String signature() {
+        return new TreeMap<>(moduleByExtension) + " " + new TreeMap<>(moduleByMimeType);
+    }
+
+    /**
+     * @return the name of the JHOVE module for the image or null if JHOVE has to detect the format itself
+     */
+    public String select(Path image) {
+        String fileName = image.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        if (dot >= 0) {
+            String module = moduleByExtension.get(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+            if (module != null) {
+                return module;
+            }
+        }
+        if (moduleByMimeType.isEmpty()) {
+            return null;
+        }
+        try {
+            String mimeType = Files.probeContentType(image);
+            return mimeType == null ? null : moduleByMimeType.get(mimeType.toLowerCase(Locale.ROOT));
+        } catch (IOException e) {
+            log.debug("Could not determine the MIME type of {}: {}", image, e.getMessage());
+            return null;
+        }
+    }
+}
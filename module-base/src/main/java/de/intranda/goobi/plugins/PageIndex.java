@@ -0,0 +1,78 @@
+package de.intranda.goobi.plugins;
+
+import lombok.extern.log4j.Log4j2;
+import ugh.dl.DocStruct;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the pages of the physical structure by their image name without file extension.
+ * <p>
+ * The index is built once per run, so linking the images to their pages is linear in the number of images.
+ */
+@Log4j2
+class PageIndex {
+    private final Map<String, DocStruct> pages = new LinkedHashMap<>();
+    private final Set<String> linkedPages = new HashSet<>();
+
+    PageIndex(DocStruct physical) {
+        List<DocStruct> children = physical.getAllChildren();
+        if (children == null) {
+            return;
+        }
+        for (DocStruct page : children) {
+            String imageName = page.getImageName();
+            if (imageName == null) {
+                continue;
+            }
+            String basename = basename(imageName);
+            // the first page wins, as in the order of the physical structure
+            DocStruct existing = pages.putIfAbsent(basename, page);
+            if (existing != null) {
+                log.warn("Image name {} is referenced by more than one page, only the first page gets the MIX metadata", imageName);
+            }
+        }
+    }
+
+    /**
+     * @return the page of the given image or null if the image is not referenced in the METS file
+     */
+    public DocStruct find(String imageName) {
+        String basename = basename(imageName);
+        DocStruct page = pages.get(basename);
+        if (page != null && !linkedPages.add(basename)) {
+            log.warn("More than one image matches the page of {}, the MIX metadata of the last image is used", imageName);
+        }
+        return page;
+    }
+
+    /**
+     * Same as {@link #find(String)}, but the page is not marked as linked.
+     */
+    public DocStruct lookup(String imageName) {
+        return pages.get(basename(imageName));
+    }
+
+    /**
+     * @return the image names of all pages that were not requested by {@link #find(String)}, in the order of the physical structure
+     */
+    public List<String> getUnmatchedPages() {
+        List<String> unmatched = new ArrayList<>();
+        for (Map.Entry<String, DocStruct> entry : pages.entrySet()) {
+            if (!linkedPages.contains(entry.getKey())) {
+                unmatched.add(entry.getValue().getImageName());
+            }
+        }
+        return unmatched;
+    }
+
+    static String basename(String fileName) {
+        int extension = fileName.lastIndexOf('.');
+        return extension < 0 ? fileName : fileName.substring(0, extension);
+    }
+}
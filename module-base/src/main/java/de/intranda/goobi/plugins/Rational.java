@@ -0,0 +1,144 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * A signed rational number as written by JHOVE for TIFF and EXIF rational values, e.g. {@code 28/10} or {@code -1/3}.
+ * <p>
+ * The parser works directly on the characters of the value, without regular expressions or intermediate strings. The sign is always kept in the
+ * numerator.
+ */
+final class Rational {
+    /**
+     * Numerators and denominators with more digits could overflow a long.
+     */
+    private static final int MAX_DIGITS = 18;
+
+    private final long numerator;
+    private final long denominator;
+
+    private Rational(long numerator, long denominator) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+    }
+
+    long getNumerator() {
+        return numerator;
+    }
+
+    long getDenominator() {
+        return denominator;
+    }
+
+    double doubleValue() {
+        return (double) numerator / (double) denominator;
+    }
+
+    /**
+     * @return true if the value contains a slash and has to be parsed as rational number
+     */
+    static boolean isRational(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '/') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a value of the form {@code [+-]digits/[+-]digits}, whitespace around the numbers is ignored.
+     *
+     * @throws IllegalArgumentException if the value is not a rational number or its denominator is zero
+     */
+    static Rational parse(CharSequence value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        int slash = -1;
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) == '/') {
+                slash = i;
+                break;
+            }
+        }
+        if (slash < 0) {
+            throw new IllegalArgumentException("Unsupported value \"" + value + "\", a rational number like 1/2 is expected");
+        }
+        int numeratorEnd = slash;
+        while (numeratorEnd > start && Character.isWhitespace(value.charAt(numeratorEnd - 1))) {
+            numeratorEnd--;
+        }
+        int denominatorStart = slash + 1;
+        while (denominatorStart < end && Character.isWhitespace(value.charAt(denominatorStart))) {
+            denominatorStart++;
+        }
+        long numerator = parseInteger(value, start, numeratorEnd);
+        long denominator = parseInteger(value, denominatorStart, end);
+        if (denominator == 0) {
+            throw new IllegalArgumentException("Unsupported value \"" + value + "\", the denominator must not be zero");
+        }
+        if (denominator < 0) {
+            numerator = -numerator;
+            denominator = -denominator;
+        }
+        return new Rational(numerator, denominator);
+    }
+
+    /**
+     * @return the quotient of a value of the form {@code numerator/denominator}. Values whose numerator or denominator is not an integer, like
+     *         {@code 1.5/2}, are divided as decimal numbers.
+     * @throws IllegalArgumentException if the value is not a quotient of two numbers or its denominator is zero
+     */
+    static double quotient(String value) {
+        try {
+            return parse(value).doubleValue();
+        } catch (IllegalArgumentException e) {
+            int slash = value.indexOf('/');
+            if (slash < 0) {
+                throw e;
+            }
+            double numerator;
+            double denominator;
+            try {
+                numerator = Double.parseDouble(value.substring(0, slash).trim());
+                denominator = Double.parseDouble(value.substring(slash + 1).trim());
+            } catch (NumberFormatException e1) {
+                throw e;
+            }
+            if (denominator == 0) {
+                throw e;
+            }
+            return numerator / denominator;
+        }
+    }
+
+    private static long parseInteger(CharSequence value, int start, int end) {
+        boolean negative = false;
+        int index = start;
+        if (index < end && (value.charAt(index) == '-' || value.charAt(index) == '+')) {
+            negative = value.charAt(index) == '-';
+            index++;
+        }
+        if (index == end || end - index > MAX_DIGITS) {
+            throw new IllegalArgumentException("Unsupported value \"" + value + "\", a rational number like 1/2 is expected");
+        }
+        long result = 0;
+        for (; index < end; index++) {
+            char c = value.charAt(index);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Unsupported value \"" + value + "\", a rational number like 1/2 is expected");
+            }
+            result = result * 10 + (c - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    @Override
+    public String toString() {
+        return numerator + "/" + denominator;
+    }
+}
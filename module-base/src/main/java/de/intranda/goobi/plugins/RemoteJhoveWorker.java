@@ -0,0 +1,141 @@
+package de.intranda.goobi.plugins;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker process that takes JHOVE analyses off the Goobi server. It claims jobs from a {@link RemoteJobQueue} and returns the XML output of
+ * JHOVE, the MIX metadata is then extracted, mapped and sorted by the plugin as for a local analysis.
+ * <p>
+ * Start it on any node that mounts the queue directory and the image folders at the same paths as the Goobi server, with the plugin, Goobi and
+ * JHOVE libraries on the class path:
+ *
+ * <pre>
+ * java -cp ... de.intranda.goobi.plugins.RemoteJhoveWorker /opt/digiverso/goobi/config/jhove/jhove.conf /mnt/shared/mix_queue 8
+ * </pre>
+ *
+ * The plugin can also start workers in its own JVM, e.g. for testing the setup.
+ */
+@Log4j2
+public class RemoteJhoveWorker implements AutoCloseable {
+    private static final long IDLE_SLEEP = 200;
+
+    private final RemoteJobQueue queue;
+    private final JhoveAnalyzerPool analyzers;
+    private final String workerId;
+    private final ExecutorService executor;
+
+    RemoteJhoveWorker(RemoteJobQueue queue, File jhoveConfigFile, int threads) throws IOException {
+        this.queue = queue;
+        this.analyzers = JhoveAnalyzerPool.forConfiguration(jhoveConfigFile);
+        // process name and host, e.g. 1234@node1
+        this.workerId = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^\\w@.-]", "_");
+        this.executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            String threadId = workerId + "-" + i;
+            executor.submit(() -> work(threadId));
+        }
+        log.info("Started {} remote JHOVE workers {} on {}", threads, workerId, jhoveConfigFile);
+    }
+
+    private void work(String threadId) {
+        while (!Thread.currentThread().isInterrupted()) {
+            RemoteJobQueue.Job job = null;
+            try {
+                job = queue.claim(threadId);
+                if (job == null) {
+                    Thread.sleep(IDLE_SLEEP);
+                } else {
+                    process(job);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                log.error("Remote JHOVE worker {} could not access the job queue: {}", threadId, e.getMessage());
+                pause();
+            } catch (RuntimeException e) {
+                // the thread must keep working, the job is handed back to the plugin as failed
+                log.error("Remote JHOVE worker {} failed", threadId, e);
+                if (job != null) {
+                    failQuietly(job, e);
+                }
+                pause();
+            }
+        }
+    }
+
+    private void failQuietly(RemoteJobQueue.Job job, Exception e) {
+        try {
+            queue.fail(job, e);
+        } catch (IOException | RuntimeException e1) {
+            log.error("Remote JHOVE worker could not report the failure of job {}: {}", job.getId(), e1.getMessage());
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(IDLE_SLEEP);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(RemoteJobQueue.Job job) throws IOException {
+        if (queue.isWithdrawn(job)) {
+            queue.discard(job);
+            return;
+        }
+        String jhoveOutput;
+        try {
+            JhoveAnalyzer analyzer = analyzers.acquire();
+            try {
+                jhoveOutput = analyzer.process(job.getImage(), job.getModuleName());
+            } finally {
+                analyzers.release(analyzer);
+            }
+        } catch (Exception e) {
+            log.warn("Remote JHOVE analysis of {} failed: {}", job.getImage(), e.getMessage());
+            queue.fail(job, e);
+            return;
+        }
+        queue.complete(job, jhoveOutput);
+    }
+
+    /**
+     * Stops the workers, jobs that are being analyzed are not finished.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param args the JHOVE configuration file, the queue directory and optionally the number of threads, by default one per processor
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: RemoteJhoveWorker <jhove configuration> <queue directory> [threads]");
+            System.exit(1);
+        }
+        File jhoveConfigFile = new File(args[0]);
+        Path queueDirectory = Paths.get(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        RemoteJhoveWorker worker = new RemoteJhoveWorker(new RemoteJobQueue(queueDirectory), jhoveConfigFile, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(worker::close));
+        worker.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+}
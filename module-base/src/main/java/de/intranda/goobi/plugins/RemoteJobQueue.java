@@ -0,0 +1,271 @@
+package de.intranda.goobi.plugins;
+
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Job queue in a directory shared by the Goobi server and the {@link RemoteJhoveWorker} processes, e.g. on a network file system.
+ * <p>
+ * A job is a small properties file in {@code jobs} naming the image and the JHOVE module. A worker claims it by renaming it into {@code claimed},
+ * the rename is atomic, so every job is processed by exactly one worker. The JHOVE output is written to {@code results} as {@code <id>.xml}, or
+ * {@code <id>.error} with the error message. All files are written under a temporary name first and renamed when they are complete.
+ * <p>
+ * If the plugin stops waiting for a job, because of a timeout or an interrupt, an open job is deleted. A claimed job gets a tombstone in
+ * {@code withdrawn}, the worker then skips the analysis or discards its result, and a result that arrived in the meantime is deleted. Files left
+ * behind by crashed workers or Goobi servers are removed by {@link #sweep(long)} once they are older than the timeout.
+ * <p>
+ * The images are referenced by their absolute path, so the image folders must be mounted at the same path on all nodes.
+ */
+@Log4j2
+class RemoteJobQueue {
+    private static final String JOB_SUFFIX = ".job";
+    private static final String RESULT_SUFFIX = ".xml";
+    private static final String ERROR_SUFFIX = ".error";
+    private static final long MAX_POLL_INTERVAL = 500;
+
+    private final Path jobs;
+    private final Path claimed;
+    private final Path results;
+    private final Path withdrawn;
+
+    /**
+     * A job claimed by a worker.
+     */
+    @Value
+    static class Job {
+        String id;
+        Path claimedFile;
+        Path image;
+        /**
+         * Name of the JHOVE module, null to let JHOVE detect the format.
+         */
+        String moduleName;
+    }
+
+    RemoteJobQueue(Path directory) throws IOException {
+        this.jobs = Files.createDirectories(directory.resolve("jobs"));
+        this.claimed = Files.createDirectories(directory.resolve("claimed"));
+        this.results = Files.createDirectories(directory.resolve("results"));
+        this.withdrawn = Files.createDirectories(directory.resolve("withdrawn"));
+    }
+
+    /**
+     * Submits an image and waits for its JHOVE output.
+     *
+     * @param timeoutMillis maximum time to wait for a worker
+     * @return the XML output of JHOVE
+     * @throws IOException if the worker reported an error or no result arrived in time
+     */
+    public String analyze(Path image, String moduleName, long timeoutMillis) throws IOException, InterruptedException {
+        return await(submit(image, moduleName), image, timeoutMillis);
+    }
+
+    /**
+     * @return the id of the new job
+     */
+    public String submit(Path image, String moduleName) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Properties job = new Properties();
+        job.setProperty("image", image.toAbsolutePath().toString());
+        if (moduleName != null) {
+            job.setProperty("module", moduleName);
+        }
+        Path tempFile = jobs.resolve(id + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            job.store(writer, null);
+        }
+        publish(tempFile, jobs.resolve(id + JOB_SUFFIX));
+        return id;
+    }
+
+    /**
+     * Waits for the result of a job. If it times out or the thread is interrupted, the job is withdrawn.
+     */
+    public String await(String id, Path image, long timeoutMillis) throws IOException, InterruptedException {
+        Path result = results.resolve(id + RESULT_SUFFIX);
+        Path error = results.resolve(id + ERROR_SUFFIX);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long interval = 10;
+        boolean collected = false;
+        try {
+            while (true) {
+                if (Files.exists(result)) {
+                    String jhoveOutput = Files.readString(result, StandardCharsets.UTF_8);
+                    Files.deleteIfExists(result);
+                    collected = true;
+                    return jhoveOutput;
+                }
+                if (Files.exists(error)) {
+                    String message = Files.readString(error, StandardCharsets.UTF_8);
+                    Files.deleteIfExists(error);
+                    collected = true;
+                    throw new IOException("Remote analysis of " + image + " failed: " + message);
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("No remote worker analyzed " + image + " within " + timeoutMillis / 1000 + " s");
+                }
+                Thread.sleep(interval);
+                interval = Math.min(MAX_POLL_INTERVAL, interval * 2);
+            }
+        } finally {
+            if (!collected) {
+                withdraw(id);
+            }
+        }
+    }
+
+    /**
+     * Withdraws a job nobody waits for any longer. An open job is deleted, a claimed one gets a tombstone.
+     */
+    private void withdraw(String id) {
+        try {
+            if (Files.deleteIfExists(jobs.resolve(id + JOB_SUFFIX))) {
+                return;
+            }
+            Path tombstone = withdrawn.resolve(id);
+            Files.write(tombstone, new byte[0]);
+            // the worker may have finished before it saw the tombstone
+            boolean late = Files.deleteIfExists(results.resolve(id + RESULT_SUFFIX));
+            late |= Files.deleteIfExists(results.resolve(id + ERROR_SUFFIX));
+            if (late) {
+                Files.deleteIfExists(tombstone);
+            }
+        } catch (IOException e) {
+            log.warn("Could not withdraw remote job {}: {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if nobody waits for the result of the job any longer
+     */
+    public boolean isWithdrawn(Job job) {
+        return Files.exists(withdrawn.resolve(job.getId()));
+    }
+
+    /**
+     * Drops a withdrawn job without a result.
+     */
+    public void discard(Job job) throws IOException {
+        Files.deleteIfExists(withdrawn.resolve(job.getId()));
+        Files.deleteIfExists(job.getClaimedFile());
+    }
+
+    /**
+     * Claims the next open job.
+     *
+     * @param workerId name of the worker, part of the name of the claimed file
+     * @return the job or null if there is no open job
+     */
+    public Job claim(String workerId) throws IOException {
+        try (DirectoryStream<Path> openJobs = Files.newDirectoryStream(jobs, "*" + JOB_SUFFIX)) {
+            for (Path jobFile : openJobs) {
+                String fileName = jobFile.getFileName().toString();
+                String id = fileName.substring(0, fileName.length() - JOB_SUFFIX.length());
+                Path claimedFile = claimed.resolve(id + "." + workerId + JOB_SUFFIX);
+                try {
+                    Files.move(jobFile, claimedFile, StandardCopyOption.ATOMIC_MOVE);
+                } catch (NoSuchFileException | FileAlreadyExistsException e) {
+                    // claimed by another worker or withdrawn in the meantime
+                    continue;
+                }
+                try {
+                    return readJob(id, claimedFile);
+                } catch (IOException | RuntimeException e) {
+                    // a damaged job file must not stay claimed, the plugin gets the error instead of waiting for its timeout
+                    log.warn("Remote job {} can't be read: {}", id, e.getMessage());
+                    fail(new Job(id, claimedFile, null, null), e);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Job readJob(String id, Path claimedFile) throws IOException {
+        Properties job = new Properties();
+        try (Reader reader = Files.newBufferedReader(claimedFile, StandardCharsets.UTF_8)) {
+            job.load(reader);
+        }
+        String image = job.getProperty("image");
+        if (image == null) {
+            throw new IOException("The job does not name an image");
+        }
+        return new Job(id, claimedFile, Paths.get(image), job.getProperty("module"));
+    }
+
+    /**
+     * Deletes all files of the queue that are older than the given age: tombstones, jobs claimed by crashed workers and jobs or results of
+     * crashed Goobi servers. Nobody waits for them once they are older than the timeout of the plugin.
+     *
+     * @return the number of deleted files
+     */
+    public int sweep(long maxAgeMillis) throws IOException {
+        long limit = System.currentTimeMillis() - maxAgeMillis;
+        int deleted = 0;
+        for (Path directory : List.of(jobs, claimed, results, withdrawn)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    try {
+                        if (Files.getLastModifiedTime(file).toMillis() < limit && Files.deleteIfExists(file)) {
+                            deleted++;
+                        }
+                    } catch (NoSuchFileException e) {
+                        // claimed, collected or withdrawn in the meantime
+                    }
+                }
+            }
+        }
+        return deleted;
+    }
+
+    public void complete(Job job, String jhoveOutput) throws IOException {
+        finish(job, RESULT_SUFFIX, jhoveOutput);
+    }
+
+    public void fail(Job job, Exception e) throws IOException {
+        finish(job, ERROR_SUFFIX, e.getClass().getSimpleName() + ": " + e.getMessage());
+    }
+
+    private void finish(Job job, String suffix, String content) throws IOException {
+        if (isWithdrawn(job)) {
+            log.debug("Discarding the result of withdrawn remote job {}", job.getId());
+            discard(job);
+            return;
+        }
+        Path tempFile = results.resolve(job.getId() + ".tmp");
+        Path target = results.resolve(job.getId() + suffix);
+        Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+        publish(tempFile, target);
+        if (isWithdrawn(job)) {
+            // withdrawn while the result was written
+            Files.deleteIfExists(target);
+            discard(job);
+            return;
+        }
+        Files.deleteIfExists(job.getClaimedFile());
+    }
+
+    private static void publish(Path tempFile, Path target) throws IOException {
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.debug("Atomic moves are not supported in {}", target.getParent());
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package de.intranda.goobi.plugins;
+
+import org.jdom2.Element;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import ugh.dl.DigitalDocument;
+import ugh.dl.DocStruct;
+import ugh.dl.Md;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores identical MIX sections of a run only once. Pages from the same capture session often share all capture settings, colour profiles and
+ * compression parameters, their {@code ADMID} then points to the same techMD section.
+ * <p>
+ * The MIX elements are compared by the SHA-256 digest of their compact serialization after they were sorted into schema order. Sections of
+ * earlier runs may be shared by several pages, so they are never replaced in place. Instead, pages are pointed to new sections and sections no
+ * page refers to any longer are removed at the end of the run. This bookkeeping is also used in runs without deduplication, when pages are
+ * detached from the sections a deduplicated run left behind.
+ * <p>
+ * An {@code ADMID} may refer to several sections separated by spaces, e.g. rights or provenance metadata of other tools. Only the id of the MIX
+ * section is replaced, all other ids are kept.
+ * <p>
+ * The sections of the document are indexed by id once per run, so finding, replacing and removing the section of a page does not scan all
+ * sections. Sections must therefore only be added, replaced and removed through this class while the run is in progress.
+ */
+class TechMdDeduplicator {
+    private final XMLOutputter outputter = new XMLOutputter(Format.getCompactFormat());
+    private final Map<String, String> idByDigest = new HashMap<>();
+    /**
+     * Ids the pages referred to before they were pointed to another section.
+     */
+    private final Set<String> releasedIds = new HashSet<>();
+    /**
+     * Number of structure elements referring to each section, decreased when a page is detached.
+     */
+    private final Map<String, Integer> references;
+    /**
+     * Position of every section in the techMD list of the document.
+     */
+    private final Map<String, Integer> indexById = new HashMap<>();
+    /**
+     * Ids of the sections that contain a MIX element, the content is only inspected once per section.
+     */
+    private final Set<String> mixIds = new HashSet<>();
+    /**
+     * Sections whose MIX element is stored outside the document and that are removed from it at the end of the run.
+     */
+    private final Set<String> detachedIds = new HashSet<>();
+    private int pages;
+
+    TechMdDeduplicator(DigitalDocument dd) {
+        this.references = countReferences(dd);
+        List<Md> techMds = dd.getTechMds();
+        if (techMds != null) {
+            for (int i = 0; i < techMds.size(); i++) {
+                Md md = techMds.get(i);
+                indexById.put(md.getId(), i);
+                if (isMix(md)) {
+                    mixIds.add(md.getId());
+                }
+            }
+        }
+    }
+
+    public String digest(Element mix) {
+        byte[] xml = outputter.outputString(mix).getBytes(StandardCharsets.UTF_8);
+        return HexFormat.of().formatHex(FileDigest.newSha256().digest(xml));
+    }
+
+    /**
+     * @return the id of an identical section of this run, null if there is none yet
+     */
+    public String lookup(String digest) {
+        return idByDigest.get(digest);
+    }
+
+    public void register(String digest, String id) {
+        idByDigest.put(digest, id);
+    }
+
+    /**
+     * Points the page to the given section and remembers the MIX section it referred to before.
+     */
+    public void link(DocStruct page, String id) {
+        String previousId = findMixId(page);
+        if (previousId != null && !previousId.equals(id)) {
+            releasedIds.add(previousId);
+        }
+        replaceAdmId(page, previousId, id);
+        pages++;
+    }
+
+    /**
+     * @param id the id of the MIX section a page refers to, may be null
+     * @return the id if no other structure element refers to the section, otherwise null. The page is then detached from the shared section and
+     *         has to get a new one.
+     */
+    public String exclusiveId(String id) {
+        if (id != null && references.getOrDefault(id, 0) > 1) {
+            references.merge(id, -1, Integer::sum);
+            releasedIds.add(id);
+            return null;
+        }
+        return id;
+    }
+
+    /**
+     * @return the id in the {@code ADMID} of the page that refers to a MIX section of the document, null if there is none
+     */
+    public String findMixId(DocStruct page) {
+        for (String id : admIds(page)) {
+            if (mixIds.contains(id)) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Appends the section to the document.
+     */
+    public void add(DigitalDocument dd, Md md) {
+        dd.addTechMd(md);
+        indexById.put(md.getId(), dd.getTechMds().size() - 1);
+        mixIds.add(md.getId());
+    }
+
+    /**
+     * Replaces the section of the document with the same id in place.
+     */
+    public void replace(DigitalDocument dd, Md md) {
+        dd.getTechMds().set(indexById.get(md.getId()), md);
+        mixIds.add(md.getId());
+    }
+
+    /**
+     * Marks the section for removal by {@link #removeDetached(DigitalDocument)}, its id stays valid for the MIX element stored elsewhere.
+     */
+    public void detach(String id) {
+        detachedIds.add(id);
+    }
+
+    /**
+     * Removes all sections marked by {@link #detach(String)} in one pass.
+     *
+     * @return the number of removed sections
+     */
+    public int removeDetached(DigitalDocument dd) {
+        List<Md> techMds = dd.getTechMds();
+        if (detachedIds.isEmpty() || techMds == null) {
+            return 0;
+        }
+        int size = techMds.size();
+        techMds.removeIf(md -> detachedIds.contains(md.getId()));
+        detachedIds.clear();
+        reindex(techMds);
+        return size - techMds.size();
+    }
+
+    /**
+     * @return the number of pages linked in this run
+     */
+    public int getPages() {
+        return pages;
+    }
+
+    /**
+     * @return the number of distinct sections of this run
+     */
+    public int getSections() {
+        return idByDigest.size();
+    }
+
+    /**
+     * Removes the released sections that are no longer referred to by any structure element.
+     *
+     * @return the number of removed sections
+     */
+    public int removeUnreferenced(DigitalDocument dd) {
+        List<Md> techMds = dd.getTechMds();
+        if (releasedIds.isEmpty() || techMds == null) {
+            return 0;
+        }
+        Set<String> referencedIds = countReferences(dd).keySet();
+        int size = techMds.size();
+        techMds.removeIf(md -> releasedIds.contains(md.getId()) && !referencedIds.contains(md.getId()));
+        reindex(techMds);
+        return size - techMds.size();
+    }
+
+    private void reindex(List<Md> techMds) {
+        indexById.clear();
+        for (int i = 0; i < techMds.size(); i++) {
+            indexById.put(techMds.get(i).getId(), i);
+        }
+    }
+
+    /**
+     * @return the number of structure elements referring to each {@code ADMID}, a section with more than one reference must not be replaced in
+     *         place
+     */
+    static Map<String, Integer> countReferences(DigitalDocument dd) {
+        Map<String, Integer> references = new HashMap<>();
+        countReferences(dd.getLogicalDocStruct(), references);
+        countReferences(dd.getPhysicalDocStruct(), references);
+        return references;
+    }
+
+    private static void countReferences(DocStruct docStruct, Map<String, Integer> references) {
+        if (docStruct == null) {
+            return;
+        }
+        for (String id : admIds(docStruct)) {
+            references.merge(id, 1, Integer::sum);
+        }
+        List<DocStruct> children = docStruct.getAllChildren();
+        if (children != null) {
+            for (DocStruct child : children) {
+                countReferences(child, references);
+            }
+        }
+    }
+
+    /**
+     * @return the ids in the {@code ADMID} of the structure element
+     */
+    static List<String> admIds(DocStruct docStruct) {
+        String admId = docStruct.getAdmId();
+        if (admId == null || admId.isBlank()) {
+            return List.of();
+        }
+        return Arrays.asList(admId.trim().split("\\s+"));
+    }
+
+    /**
+     * Replaces an id in the {@code ADMID} of the page and keeps the other ids. If the old id is null or not part of it, the new id is appended.
+     */
+    static void replaceAdmId(DocStruct page, String oldId, String newId) {
+        List<String> ids = new ArrayList<>(admIds(page));
+        int index = oldId == null ? -1 : ids.indexOf(oldId);
+        if (index >= 0) {
+            ids.set(index, newId);
+        } else if (!ids.contains(newId)) {
+            ids.add(newId);
+        }
+        page.setAdmId(String.join(" ", ids));
+    }
+
+    /**
+     * @return true if the content of the section is a {@code mix:mix} element, possibly wrapped in {@code mets:mdWrap} and {@code mets:xmlData}
+     */
+    static boolean isMix(Md md) {
+        Node node = md.getContent();
+        if (node instanceof Document document) {
+            node = document.getDocumentElement();
+        }
+        while (node != null && MixMetadataEnrichmentPlugin.NAMESPACE_METS.getURI().equals(node.getNamespaceURI())) {
+            node = firstChildElement(node);
+        }
+        return node != null && "mix".equals(node.getLocalName())
+                && MixMetadataEnrichmentPlugin.NAMESPACE_MIX.getURI().equals(node.getNamespaceURI());
+    }
+
+    private static Node firstChildElement(Node node) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                return child;
+            }
+        }
+        return null;
+    }
+}
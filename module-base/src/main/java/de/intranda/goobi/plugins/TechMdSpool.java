@@ -0,0 +1,207 @@
+package de.intranda.goobi.plugins;
+
+import de.sub.goobi.helper.StorageProvider;
+import lombok.extern.log4j.Log4j2;
+import org.jdom2.Element;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import ugh.dl.DigitalDocument;
+import ugh.dl.Md;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Collects the MIX elements of a run as serialized records in a local file instead of attaching them to the {@link DigitalDocument}.
+ * <p>
+ * After the mets file was written, {@link #mergeInto(Path)} streams the mets file once and inserts all collected sections as {@code mets:techMD}
+ * into its first {@code mets:amdSec}. This way the heap used by a run does not grow with the number of pages.
+ */
+@Log4j2
+class TechMdSpool implements Closeable {
+    private static final String NAMESPACE_METS = MixMetadataEnrichmentPlugin.NAMESPACE_METS.getURI();
+
+    private final Path file;
+    private final DataOutputStream out;
+    private final XMLOutputter outputter = new XMLOutputter(Format.getCompactFormat());
+    /**
+     * Ids of all techMD sections of the mets file and of the spool, new ids must not collide with them.
+     */
+    private final Set<String> usedIds = new HashSet<>();
+    private int nextId = 1;
+    private int size;
+
+    /**
+     * @param directory folder for the spool file
+     */
+    TechMdSpool(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.file = Files.createTempFile(directory, "techmd", ".spool");
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    }
+
+    /**
+     * Reserves the ids of the techMD sections that already exist in the mets file.
+     */
+    public void reserveIds(DigitalDocument dd) {
+        List<Md> techMds = dd.getTechMds();
+        if (techMds != null) {
+            for (Md md : techMds) {
+                usedIds.add(md.getId());
+            }
+        }
+    }
+
+    /**
+     * @return a new techMD id that is not used in the mets file
+     */
+    public String newId() {
+        String id;
+        do {
+            id = String.format("MIX_%04d", nextId++);
+        } while (usedIds.contains(id));
+        usedIds.add(id);
+        return id;
+    }
+
+    public void add(String id, Element mix) throws IOException {
+        byte[] xml = outputter.outputString(mix).getBytes(StandardCharsets.UTF_8);
+        out.writeUTF(id);
+        out.writeInt(xml.length);
+        out.write(xml);
+        size++;
+    }
+
+    /**
+     * Inserts all collected sections into the first {@code mets:amdSec} of the given mets file and replaces the file. If it has no amdSec, a new one
+     * with a generated id is created in front of the {@code mets:fileSec} or {@code mets:structMap}.
+     */
+    public void mergeInto(Path metsFile) throws IOException {
+        out.close();
+        if (size == 0) {
+            return;
+        }
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+        Path tempFile = metsFile.resolveSibling(metsFile.getFileName() + ".tmp");
+        boolean inserted = false;
+        StorageProvider storage = StorageProvider.getInstance();
+        try (InputStream in = new BufferedInputStream(storage.newInputStream(metsFile));
+                OutputStream os = new BufferedOutputStream(storage.newOutputStream(tempFile))) {
+            XMLEventReader reader = inputFactory.createXMLEventReader(in);
+            XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(os, "UTF-8");
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (!inserted && event.isStartElement() && NAMESPACE_METS.equals(event.asStartElement().getName().getNamespaceURI())) {
+                    StartElement element = event.asStartElement();
+                    String prefix = element.getName().getPrefix();
+                    switch (element.getName().getLocalPart()) {
+                        case "amdSec" -> {
+                            // techMD sections are the first children of an amdSec
+                            writer.add(event);
+                            writeTechMds(writer, eventFactory, inputFactory, prefix);
+                            inserted = true;
+                            continue;
+                        }
+                        case "fileSec", "structMap" -> {
+                            writer.add(eventFactory.createStartElement(prefix, NAMESPACE_METS, "amdSec"));
+                            // the ids of the following sections are not known yet, a random one can't collide with them
+                            writer.add(eventFactory.createAttribute("ID", "AMD_" + UUID.randomUUID()));
+                            writeTechMds(writer, eventFactory, inputFactory, prefix);
+                            writer.add(eventFactory.createEndElement(prefix, NAMESPACE_METS, "amdSec"));
+                            inserted = true;
+                        }
+                        default -> {
+                            // sections in front of the amdSec are copied unchanged
+                        }
+                    }
+                }
+                writer.add(event);
+            }
+            writer.flush();
+            writer.close();
+            reader.close();
+        } catch (XMLStreamException e) {
+            Files.deleteIfExists(tempFile);
+            throw new IOException("Could not add the MIX metadata to " + metsFile + ": " + e.getMessage(), e);
+        }
+        if (!inserted) {
+            Files.deleteIfExists(tempFile);
+            throw new IOException("Could not add the MIX metadata to " + metsFile + ", it has no amdSec, fileSec or structMap");
+        }
+        storage.move(tempFile, metsFile);
+        log.debug("Added {} techMD sections to {}", size, metsFile);
+    }
+
+    private void writeTechMds(XMLEventWriter writer, XMLEventFactory eventFactory, XMLInputFactory inputFactory, String prefix)
+            throws IOException, XMLStreamException {
+        QName techMd = new QName(NAMESPACE_METS, "techMD", prefix);
+        QName mdWrap = new QName(NAMESPACE_METS, "mdWrap", prefix);
+        QName xmlData = new QName(NAMESPACE_METS, "xmlData", prefix);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                String id;
+                try {
+                    id = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] xml = new byte[in.readInt()];
+                in.readFully(xml);
+
+                writer.add(eventFactory.createStartElement(techMd, null, null));
+                writer.add(eventFactory.createAttribute("ID", id));
+                writer.add(eventFactory.createStartElement(mdWrap, null, null));
+                writer.add(eventFactory.createAttribute("MDTYPE", "NISOIMG"));
+                writer.add(eventFactory.createStartElement(xmlData, null, null));
+                XMLEventReader mixReader = inputFactory.createXMLEventReader(new ByteArrayInputStream(xml));
+                while (mixReader.hasNext()) {
+                    XMLEvent mixEvent = mixReader.nextEvent();
+                    if (!mixEvent.isStartDocument() && !mixEvent.isEndDocument()) {
+                        writer.add(mixEvent);
+                    }
+                }
+                mixReader.close();
+                writer.add(eventFactory.createEndElement(xmlData, null));
+                writer.add(eventFactory.createEndElement(mdWrap, null));
+                writer.add(eventFactory.createEndElement(techMd, null));
+            }
+        }
+    }
+
+    /**
+     * Deletes the spool file.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,140 @@
+package de.intranda.goobi.plugins;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Executors for the I/O and CPU bound parts of the image processing.
+ * <p>
+ * In the default mode all work of an image is done on the same bounded pool. In the split mode the images are processed on a separate I/O executor
+ * that allows many outstanding reads, which hides the latency of network storage. Only the CPU heavy parsing is handed to a bounded pool of
+ * platform threads. Virtual threads are used for the I/O executor if the Java runtime provides them, otherwise a bounded pool of platform threads.
+ */
+@Log4j2
+class WorkScheduler implements AutoCloseable {
+    private static final int PREFETCH_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Executor for the complete processing of single images.
+     */
+    @Getter
+    private final ExecutorService ioExecutor;
+    /**
+     * Executor for the CPU bound parts, null if they run on the I/O executor as well.
+     */
+    private final ExecutorService cpuExecutor;
+    /**
+     * Read buffers of the prefetch, one for each worker that is reading at the same time.
+     */
+    private final Queue<ByteBuffer> prefetchBuffers = new ConcurrentLinkedQueue<>();
+
+    private WorkScheduler(ExecutorService ioExecutor, ExecutorService cpuExecutor) {
+        this.ioExecutor = ioExecutor;
+        this.cpuExecutor = cpuExecutor;
+    }
+
+    /**
+     * @return a scheduler that processes the images completely on {@code cpuThreads} platform threads
+     */
+    static WorkScheduler direct(int cpuThreads) {
+        return new WorkScheduler(Executors.newFixedThreadPool(cpuThreads), null);
+    }
+
+    /**
+     * @param cpuThreads number of threads for the CPU bound parts
+     * @param ioThreads maximum number of platform threads for the I/O bound parts if virtual threads are not available
+     * @return a scheduler that separates the I/O bound from the CPU bound work
+     */
+    static WorkScheduler split(int cpuThreads, int ioThreads) {
+        return new WorkScheduler(newIoExecutor(ioThreads), Executors.newFixedThreadPool(cpuThreads));
+    }
+
+    private static ExecutorService newIoExecutor(int ioThreads) {
+        try {
+            // virtual threads are only available since Java 21
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService executor = (ExecutorService) factory.invoke(null);
+            log.debug("Using virtual threads for the image I/O");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            log.debug("Virtual threads are not available, using {} platform threads for the image I/O", ioThreads);
+            return Executors.newFixedThreadPool(ioThreads);
+        }
+    }
+
+    /**
+     * Runs the CPU bound part of an image on the CPU pool and waits for its result. In the default mode it is run in the calling thread.
+     */
+    public <R> R compute(Callable<R> work) throws Exception {
+        if (cpuExecutor == null) {
+            return work.call();
+        }
+        Future<R> future = cpuExecutor.submit(work);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception exception) {
+                throw exception;
+            }
+            throw (Error) e.getCause();
+        }
+    }
+
+    /**
+     * @return true if the I/O bound work is done on its own executor
+     */
+    public boolean isSplit() {
+        return cpuExecutor != null;
+    }
+
+    /**
+     * Reads the start of the file with large sequential reads, so the small random reads of the following analysis are served from the page cache
+     * instead of the network storage.
+     *
+     * @param window number of bytes read from the start of the file, the whole file is read if it is 0 or less
+     */
+    void prefetch(Path file, long window) throws IOException {
+        ByteBuffer buffer = prefetchBuffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(PREFETCH_BUFFER_SIZE);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long remaining = window > 0 ? window : Long.MAX_VALUE;
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                int read = channel.read(buffer);
+                if (read == -1) {
+                    break;
+                }
+                remaining -= read;
+            }
+        } finally {
+            prefetchBuffers.offer(buffer);
+        }
+    }
+
+    @Override
+    public void close() {
+        ioExecutor.shutdownNow();
+        if (cpuExecutor != null) {
+            cpuExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class BufferSizeTunerTest {
+
+    @Test
+    public void testWarmUpUsesAllCandidates() {
+        BufferSizeTuner tuner = new BufferSizeTuner("nfs");
+        Set<Integer> sizes = new HashSet<>();
+        for (int i = 0; i < 5 * BufferSizeTuner.CANDIDATES.length; i++) {
+            sizes.add(tuner.next());
+        }
+        assertEquals(BufferSizeTuner.CANDIDATES.length, sizes.size());
+        assertEquals(BufferSizeTuner.CANDIDATES[0], tuner.getCurrent());
+    }
+
+    @Test
+    public void testChoosesHighestThroughput() {
+        BufferSizeTuner tuner = new BufferSizeTuner("nfs");
+        for (int i = 0; i < 5 * BufferSizeTuner.CANDIDATES.length; i++) {
+            int size = tuner.next();
+            // 256 KB reads twice as fast as all other sizes
+            tuner.record(size, 100_000_000, size == 256 * 1024 ? 500_000_000 : 1_000_000_000);
+        }
+        assertEquals(256 * 1024, tuner.getCurrent());
+        assertEquals(256 * 1024, tuner.next());
+    }
+
+    @Test
+    public void testFollowsChangedThroughput() {
+        BufferSizeTuner tuner = new BufferSizeTuner("nfs");
+        for (int i = 0; i < 1000; i++) {
+            int size = tuner.next();
+            tuner.record(size, 100_000_000, size == 256 * 1024 ? 500_000_000 : 1_000_000_000);
+        }
+        assertEquals(256 * 1024, tuner.getCurrent());
+
+        // the storage changed, after a long history with 256 KB a few slow reads are enough to choose another size
+        for (int i = 0; i < 20; i++) {
+            tuner.record(256 * 1024, 100_000_000, 4_000_000_000L);
+        }
+        assertNotEquals(256 * 1024, tuner.getCurrent());
+    }
+}
@@ -0,0 +1,138 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.jdom2.Element;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class CheckpointJournalTest {
+
+    private static final Path FIRST = Paths.get("/images/00000001.tif");
+    private static final Path SECOND = Paths.get("/images/00000002.tif");
+    private static final Path THIRD = Paths.get("/images/00000003.tif");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot().toPath().resolve("mix_metadata");
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        try (CheckpointJournal journal = CheckpointJournal.open(directory, "context", 1)) {
+            journal.append(FIRST, 100, 1000, mix("8"));
+            journal.append(SECOND, 200, 2000, mix("16"));
+        }
+
+        try (CheckpointJournal journal = CheckpointJournal.open(directory, "context", 1)) {
+            assertEquals(2, journal.getResumableCount());
+            Element mix = journal.lookup(SECOND, 200, 2000);
+            assertNotNull(mix);
+            assertEquals("16", mix.getChildText("bitsPerSample", MixMetadataEnrichmentPlugin.NAMESPACE_MIX));
+            // the image was replaced since the journal was written
+            assertNull(journal.lookup(FIRST, 101, 1000));
+            assertNull(journal.lookup(FIRST, 100, 1001));
+            assertNull(journal.lookup(THIRD, 100, 1000));
+        }
+    }
+
+    @Test
+    public void testTruncatedLastRecord() throws Exception {
+        try (CheckpointJournal journal = CheckpointJournal.open(directory, "context", 1)) {
+            journal.append(FIRST, 100, 1000, mix("8"));
+            journal.append(SECOND, 200, 2000, mix("16"));
+        }
+        // the run was interrupted while the last record was written
+        Path file = directory.resolve(CheckpointJournal.FILE_NAME);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (CheckpointJournal journal = CheckpointJournal.open(directory, "context", 1)) {
+            assertEquals(1, journal.getResumableCount());
+            assertNotNull(journal.lookup(FIRST, 100, 1000));
+            assertNull(journal.lookup(SECOND, 200, 2000));
+            journal.append(THIRD, 300, 3000, mix("24"));
+        }
+
+        // new records are appended after the last complete one
+        try (CheckpointJournal journal = CheckpointJournal.open(directory, "context", 1)) {
+            assertEquals(2, journal.getResumableCount());
+            assertNotNull(journal.lookup(FIRST, 100, 1000));
+            assertNotNull(journal.lookup(THIRD, 300, 3000));
+        }
+    }
+
+    @Test
+    public void testGarbageRecordLength() throws Exception {
+        try (CheckpointJournal journal = CheckpointJournal.open(directory, "context", 1)) {
+            journal.append(FIRST, 100, 1000, mix("8"));
+        }
+        // a torn write left a header with a length far beyond the end of the file
+        Path file = directory.resolve(CheckpointJournal.FILE_NAME);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND))) {
+            out.writeUTF(SECOND.toString());
+            out.writeLong(200);
+            out.writeLong(2000);
+            out.writeInt(Integer.MAX_VALUE - 8);
+            out.write(new byte[] { 1, 2, 3 });
+        }
+
+        try (CheckpointJournal journal = CheckpointJournal.open(directory, "context", 1)) {
+            assertEquals(1, journal.getResumableCount());
+            assertNull(journal.lookup(SECOND, 200, 2000));
+            journal.append(THIRD, 300, 3000, mix("24"));
+        }
+        try (CheckpointJournal journal = CheckpointJournal.open(directory, "context", 1)) {
+            assertEquals(2, journal.getResumableCount());
+            assertNotNull(journal.lookup(THIRD, 300, 3000));
+        }
+    }
+
+    @Test
+    public void testContextMismatch() throws Exception {
+        try (CheckpointJournal journal = CheckpointJournal.open(directory, "context", 1)) {
+            journal.append(FIRST, 100, 1000, mix("8"));
+        }
+
+        try (CheckpointJournal journal = CheckpointJournal.open(directory, "other mappings", 1)) {
+            assertEquals(0, journal.getResumableCount());
+            assertNull(journal.lookup(FIRST, 100, 1000));
+        }
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        CheckpointJournal journal = CheckpointJournal.open(directory, "context", 10);
+        journal.append(FIRST, 100, 1000, mix("8"));
+        journal.delete();
+        assertFalse(Files.exists(directory.resolve(CheckpointJournal.FILE_NAME)));
+
+        try (CheckpointJournal reopened = CheckpointJournal.open(directory, "context", 10)) {
+            assertEquals(0, reopened.getResumableCount());
+        }
+    }
+
+    private static Element mix(String bitsPerSample) {
+        Element mix = new Element("mix", MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+        mix.addContent(new Element("bitsPerSample", MixMetadataEnrichmentPlugin.NAMESPACE_MIX).setText(bitsPerSample));
+        return mix;
+    }
+}
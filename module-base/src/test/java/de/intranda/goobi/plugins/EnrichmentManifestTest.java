@@ -0,0 +1,104 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+
+public class EnrichmentManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path manifestFile;
+    private Path image;
+
+    @Before
+    public void setUp() throws Exception {
+        manifestFile = folder.getRoot().toPath().resolve("mix_metadata").resolve(EnrichmentManifest.FILE_NAME);
+        image = folder.newFile("00000001.tif").toPath();
+        Files.write(image, new byte[] { 1, 2, 3 });
+        Files.setLastModifiedTime(image, FileTime.fromMillis(1000000));
+    }
+
+    @Test
+    public void testUnchangedImageAfterReload() throws Exception {
+        save(false, "context");
+
+        EnrichmentManifest manifest = EnrichmentManifest.load(manifestFile, false, "context");
+        EnrichmentManifest.Entry previous = manifest.get(image.toString());
+        assertNotNull(previous);
+        assertEquals("techmd_1", previous.getTechMdId());
+        assertTrue(previous.hasSameContent(manifest.describe(image)));
+    }
+
+    @Test
+    public void testModificationTimeIsChange() throws Exception {
+        save(false, "context");
+        Files.setLastModifiedTime(image, FileTime.fromMillis(2000000));
+
+        EnrichmentManifest manifest = EnrichmentManifest.load(manifestFile, false, "context");
+        assertFalse(manifest.get(image.toString()).hasSameContent(manifest.describe(image)));
+    }
+
+    @Test
+    public void testHashDetectsChangeWithSameSizeAndTime() throws Exception {
+        save(true, "context");
+        Files.write(image, new byte[] { 3, 2, 1 });
+        Files.setLastModifiedTime(image, FileTime.fromMillis(1000000));
+
+        EnrichmentManifest withHash = EnrichmentManifest.load(manifestFile, true, "context");
+        assertFalse(withHash.get(image.toString()).hasSameContent(withHash.describe(image)));
+    }
+
+    @Test
+    public void testOtherContextDiscardsEntries() throws Exception {
+        save(false, "context");
+
+        assertNull(EnrichmentManifest.load(manifestFile, false, "other context").get(image.toString()));
+        // files written before the context was recorded are discarded as well
+        Files.write(manifestFile, Files.readAllLines(manifestFile, StandardCharsets.UTF_8).subList(1, 2), StandardCharsets.UTF_8);
+        assertNull(EnrichmentManifest.load(manifestFile, false, "context").get(image.toString()));
+    }
+
+    @Test
+    public void testSaveReplacesFileAtomically() throws Exception {
+        save(false, "context");
+        EnrichmentManifest manifest = EnrichmentManifest.load(manifestFile, false, "context");
+        manifest.retainAll(Set.of());
+        manifest.save();
+
+        assertFalse(Files.exists(manifestFile.resolveSibling(EnrichmentManifest.FILE_NAME + ".tmp")));
+        assertEquals(1, Files.readAllLines(manifestFile, StandardCharsets.UTF_8).size());
+        assertNull(EnrichmentManifest.load(manifestFile, false, "context").get(image.toString()));
+    }
+
+    @Test
+    public void testIgnoresInvalidLines() throws Exception {
+        save(false, "context");
+        Files.write(manifestFile, "broken line\nx\t1\tnot a number\t\t\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        EnrichmentManifest manifest = EnrichmentManifest.load(manifestFile, false, "context");
+        assertNotNull(manifest.get(image.toString()));
+        assertNull(manifest.get("x"));
+    }
+
+    private void save(boolean useHash, String context) throws Exception {
+        EnrichmentManifest manifest = EnrichmentManifest.load(manifestFile, useHash, context);
+        manifest.put(manifest.describe(image).withTechMdId("techmd_1"));
+        manifest.save();
+    }
+}
@@ -0,0 +1,56 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class ErrorCollectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParseThreshold() {
+        assertEquals(0, ErrorCollector.parseThreshold(null, 100));
+        assertEquals(3, ErrorCollector.parseThreshold(" 3 ", 100));
+        assertEquals(5, ErrorCollector.parseThreshold("5%", 100));
+        assertEquals(2, ErrorCollector.parseThreshold("2.5 %", 99));
+        assertEquals(0, ErrorCollector.parseThreshold("some", 100));
+    }
+
+    @Test
+    public void testThreshold() {
+        ErrorCollector errors = new ErrorCollector(1);
+        assertTrue(errors.isEmpty());
+        errors.add(Paths.get("/images/00000002.tif"), new IllegalStateException("more than one mix element"));
+        assertFalse(errors.isExceeded());
+        errors.add(Paths.get("/images/00000001.tif"), new IllegalArgumentException());
+        assertTrue(errors.isExceeded());
+        assertEquals(2, errors.size());
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        ErrorCollector errors = new ErrorCollector(0);
+        errors.add(Paths.get("/images/00000002.tif"), new IllegalStateException("more than\tone\nmix element"));
+        errors.add(Paths.get("/images/00000001.tif"), new IllegalArgumentException("denominator is zero"));
+
+        Path report = folder.getRoot().toPath().resolve("mix_metadata").resolve(ErrorCollector.REPORT_FILE_NAME);
+        errors.writeReport(report);
+        List<String> lines = Files.readAllLines(report);
+        assertEquals(3, lines.size());
+        assertEquals("/images/00000001.tif\tIllegalArgumentException\tdenominator is zero", lines.get(1));
+        assertEquals("/images/00000002.tif\tIllegalStateException\tmore than one mix element", lines.get(2));
+
+        assertEquals("00000001.tif (IllegalArgumentException: denominator is zero) and 1 more", errors.summary(1));
+    }
+}
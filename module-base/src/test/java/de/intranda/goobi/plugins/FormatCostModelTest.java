@@ -0,0 +1,46 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+public class FormatCostModelTest {
+
+    private static final Path SMALL_JPG = Paths.get("00000001.jpg");
+    private static final Path LARGE_JPG = Paths.get("00000002.JPG");
+    private static final Path SMALL_JP2 = Paths.get("00000003.jp2");
+
+    private static final Map<Path, Long> SIZES = Map.of(SMALL_JPG, 1_000L, LARGE_JPG, 5_000L, SMALL_JP2, 2_000L);
+
+    @Test
+    public void testOrderBySizeWithoutTimings() {
+        FormatCostModel model = new FormatCostModel();
+        assertEquals(List.of(LARGE_JPG, SMALL_JP2, SMALL_JPG), model.mostExpensiveFirst(List.of(SMALL_JPG, LARGE_JPG, SMALL_JP2), SIZES));
+    }
+
+    @Test
+    public void testOrderByRecordedTimings() {
+        FormatCostModel model = new FormatCostModel();
+        // JPEG2000 takes ten times longer per byte than JPEG
+        model.record(Paths.get("a.jpg"), 1_000, 1_000_000);
+        model.record(Paths.get("b.jp2"), 1_000, 10_000_000);
+        assertEquals(List.of(SMALL_JP2, LARGE_JPG, SMALL_JPG), model.mostExpensiveFirst(List.of(SMALL_JPG, LARGE_JPG, SMALL_JP2), SIZES));
+    }
+
+    @Test
+    public void testMovingAverage() {
+        FormatCostModel model = new FormatCostModel();
+        model.record(Paths.get("a.tif"), 1_000, 1_000_000);
+        model.record(Paths.get("b.tif"), 1_000, 6_000_000);
+        model.record(Paths.get("c.jpg"), 1_000, 2_500_000);
+        // tif: 1000 + 0.2 * (6000 - 1000) = 2000 ns per byte, below the 2500 ns per byte of jpg
+        Path tif = Paths.get("d.tif");
+        Path jpg = Paths.get("e.jpg");
+        assertEquals(List.of(jpg, tif), model.mostExpensiveFirst(List.of(tif, jpg), Map.of(tif, 100L, jpg, 90L)));
+    }
+}
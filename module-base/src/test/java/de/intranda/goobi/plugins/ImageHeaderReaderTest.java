@@ -0,0 +1,340 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.plugins.tiff.BaselineTIFFTagSet;
+import javax.imageio.plugins.tiff.ExifParentTIFFTagSet;
+import javax.imageio.plugins.tiff.ExifTIFFTagSet;
+import javax.imageio.plugins.tiff.TIFFDirectory;
+import javax.imageio.plugins.tiff.TIFFField;
+import javax.imageio.plugins.tiff.TIFFTag;
+import javax.imageio.stream.ImageOutputStream;
+
+public class ImageHeaderReaderTest {
+
+    private static final Namespace MIX = MixMetadataEnrichmentPlugin.NAMESPACE_MIX;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ImageHeaderReader reader = new ImageHeaderReader();
+
+    @Test
+    public void testLittleEndianTiff() throws Exception {
+        Path image = writeTiff("little.tif", ByteOrder.LITTLE_ENDIAN, rgb(120, 80), false);
+        Element mix = read(image);
+
+        assertEquals("image/tiff", text(mix, "BasicDigitalObjectInformation", "FormatDesignation", "formatName"));
+        assertEquals("little endian", text(mix, "BasicDigitalObjectInformation", "byteOrder"));
+        assertEquals(String.valueOf(Files.size(image)), text(mix, "BasicDigitalObjectInformation", "fileSize"));
+        assertEquals("Uncompressed", text(mix, "BasicDigitalObjectInformation", "Compression", "compressionScheme"));
+        assertEquals("120", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "imageWidth"));
+        assertEquals("80", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "imageHeight"));
+        assertEquals("RGB", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "PhotometricInterpretation", "colorSpace"));
+        assertEquals(List.of("8", "8", "8"), bitsPerSample(mix));
+        assertEquals("3", text(mix, "ImageAssessmentMetadata", "ImageColorEncoding", "samplesPerPixel"));
+    }
+
+    @Test
+    public void testBigEndianTiffWithExif() throws Exception {
+        Path image = writeTiff("big.tif", ByteOrder.BIG_ENDIAN, gray(33, 21), true);
+        JhoveResult result = reader.read(image);
+        assertNotNull(result);
+        Element mix = result.getMixElements().get(0);
+
+        assertEquals("big endian", text(mix, "BasicDigitalObjectInformation", "byteOrder"));
+        assertEquals("33", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "imageWidth"));
+        assertEquals("21", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "imageHeight"));
+        assertEquals("BlackIsZero", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "PhotometricInterpretation", "colorSpace"));
+        assertEquals(List.of("8"), bitsPerSample(mix));
+        assertEquals("in.", text(mix, "ImageAssessmentMetadata", "SpatialMetrics", "samplingFrequencyUnit"));
+        assertEquals("300", text(mix, "ImageAssessmentMetadata", "SpatialMetrics", "xSamplingFrequency", "numerator"));
+        assertEquals("1", text(mix, "ImageAssessmentMetadata", "SpatialMetrics", "xSamplingFrequency", "denominator"));
+        assertEquals("Intranda", text(mix, "ImageCaptureMetadata", "DigitalCameraCapture", "digitalCameraManufacturer"));
+        assertEquals("Scanner 1", text(mix, "ImageCaptureMetadata", "DigitalCameraCapture", "DigitalCameraModel", "digitalCameraModelName"));
+        assertEquals("2024-05-17T10:11:12", text(mix, "ImageCaptureMetadata", "GeneralCaptureInformation", "dateTimeCreated"));
+
+        assertEquals("1/125", result.getProperties().get("ExposureTime"));
+        assertEquals("56/10", result.getProperties().get("FNumber"));
+        assertEquals("200", result.getProperties().get("ISOSpeedRatings"));
+    }
+
+    @Test
+    public void testMultiPageTiffIsLeftToJhove() throws Exception {
+        Path image = folder.getRoot().toPath().resolve("pages.tif");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(image.toFile())) {
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+            writer.writeToSequence(new IIOImage(rgb(10, 10), null, null), null);
+            writer.writeToSequence(new IIOImage(rgb(20, 20), null, null), null);
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        assertNull(reader.read(image));
+    }
+
+    @Test
+    public void testJpegWithJfif() throws Exception {
+        Path image = writeJpeg("jfif.jpg", rgb(64, 48), null);
+        Element mix = read(image);
+
+        assertEquals("image/jpeg", text(mix, "BasicDigitalObjectInformation", "FormatDesignation", "formatName"));
+        assertNull(text(mix, "BasicDigitalObjectInformation", "byteOrder"));
+        assertEquals("JPEG", text(mix, "BasicDigitalObjectInformation", "Compression", "compressionScheme"));
+        assertEquals("64", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "imageWidth"));
+        assertEquals("48", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "imageHeight"));
+        assertEquals("YCbCr", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "PhotometricInterpretation", "colorSpace"));
+        assertEquals(List.of("8", "8", "8"), bitsPerSample(mix));
+        // from the JFIF segment
+        assertEquals("in.", text(mix, "ImageAssessmentMetadata", "SpatialMetrics", "samplingFrequencyUnit"));
+        assertEquals("150", text(mix, "ImageAssessmentMetadata", "SpatialMetrics", "xSamplingFrequency", "numerator"));
+        assertEquals("150", text(mix, "ImageAssessmentMetadata", "SpatialMetrics", "ySamplingFrequency", "numerator"));
+    }
+
+    @Test
+    public void testJpegWithExif() throws Exception {
+        byte[] exif = Files.readAllBytes(writeTiff("exif.tif", ByteOrder.LITTLE_ENDIAN, gray(1, 1), true));
+        Path image = writeJpeg("exif.jpg", gray(40, 30), exif);
+        JhoveResult result = reader.read(image);
+        assertNotNull(result);
+        Element mix = result.getMixElements().get(0);
+
+        // the frame header wins over the dimensions of the EXIF structure
+        assertEquals("40", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "imageWidth"));
+        assertEquals("30", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "imageHeight"));
+        assertEquals("BlackIsZero", text(mix, "BasicImageInformation", "BasicImageCharacteristics", "PhotometricInterpretation", "colorSpace"));
+        assertEquals(List.of("8"), bitsPerSample(mix));
+        assertEquals("JPEG", text(mix, "BasicDigitalObjectInformation", "Compression", "compressionScheme"));
+        // the EXIF resolution wins over the JFIF density
+        assertEquals("300", text(mix, "ImageAssessmentMetadata", "SpatialMetrics", "xSamplingFrequency", "numerator"));
+        assertEquals("Intranda", text(mix, "ImageCaptureMetadata", "DigitalCameraCapture", "digitalCameraManufacturer"));
+        assertEquals("1/125", result.getProperties().get("ExposureTime"));
+    }
+
+    @Test
+    public void testUnsupportedFormat() throws Exception {
+        Path image = folder.getRoot().toPath().resolve("image.png");
+        ImageIO.write(rgb(5, 5), "png", image.toFile());
+        assertNull(reader.read(image));
+
+        Path truncated = folder.getRoot().toPath().resolve("truncated.tif");
+        byte[] tiff = Files.readAllBytes(writeTiff("complete.tif", ByteOrder.BIG_ENDIAN, rgb(5, 5), false));
+        Files.write(truncated, Arrays.copyOf(tiff, 10));
+        assertNull(reader.read(truncated));
+    }
+
+    @Test
+    public void testSameAsJhove() throws Exception {
+        JhoveAnalyzerPool analyzers = jhove();
+        List<Path> images = List.of(
+                writeTiff("little.tif", ByteOrder.LITTLE_ENDIAN, rgb(120, 80), false),
+                writeTiff("big.tif", ByteOrder.BIG_ENDIAN, gray(33, 21), true),
+                writeJpeg("jfif.jpg", rgb(64, 48), null));
+        for (Path image : images) {
+            Element header = read(image);
+            Element jhove = jhoveMix(analyzers, image);
+            String message = image.getFileName().toString();
+            for (String[] path : List.of(
+                    new String[] { "BasicImageInformation", "BasicImageCharacteristics", "imageWidth" },
+                    new String[] { "BasicImageInformation", "BasicImageCharacteristics", "imageHeight" },
+                    new String[] { "BasicImageInformation", "BasicImageCharacteristics", "PhotometricInterpretation", "colorSpace" },
+                    new String[] { "ImageAssessmentMetadata", "ImageColorEncoding", "samplesPerPixel" },
+                    new String[] { "ImageAssessmentMetadata", "SpatialMetrics", "xSamplingFrequency", "numerator" },
+                    new String[] { "ImageAssessmentMetadata", "SpatialMetrics", "ySamplingFrequency", "numerator" })) {
+                assertEquals(message + " " + String.join("/", path), text(jhove, path), text(header, path));
+            }
+            assertEquals(message, bitsPerSample(jhove), bitsPerSample(header));
+        }
+    }
+
+    private Element read(Path image) throws IOException {
+        JhoveResult result = reader.read(image);
+        assertNotNull(image.toString(), result);
+        return result.getMixElements().get(0);
+    }
+
+    /**
+     * Writes a TIFF with the given byte order, with resolution, camera and EXIF capture settings if requested.
+     */
+    private Path writeTiff(String name, ByteOrder order, BufferedImage image, boolean withCaptureMetadata) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_DISABLED);
+            IIOMetadata streamMetadata = writer.getDefaultStreamMetadata(param);
+            String streamFormat = streamMetadata.getNativeMetadataFormatName();
+            IIOMetadataNode byteOrder = new IIOMetadataNode("ByteOrder");
+            byteOrder.setAttribute("value", order.toString());
+            IIOMetadataNode streamRoot = new IIOMetadataNode(streamFormat);
+            streamRoot.appendChild(byteOrder);
+            streamMetadata.setFromTree(streamFormat, streamRoot);
+            IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+            if (withCaptureMetadata) {
+                TIFFDirectory ifd = TIFFDirectory.createFromMetadata(metadata);
+                BaselineTIFFTagSet baseline = BaselineTIFFTagSet.getInstance();
+                ifd.addTIFFField(ascii(baseline.getTag(BaselineTIFFTagSet.TAG_MAKE), "Intranda"));
+                ifd.addTIFFField(ascii(baseline.getTag(BaselineTIFFTagSet.TAG_MODEL), "Scanner 1"));
+                ifd.addTIFFField(ascii(baseline.getTag(BaselineTIFFTagSet.TAG_DATE_TIME), "2024:05:17 10:11:12"));
+                ifd.addTIFFField(rational(baseline.getTag(BaselineTIFFTagSet.TAG_X_RESOLUTION), 300, 1));
+                ifd.addTIFFField(rational(baseline.getTag(BaselineTIFFTagSet.TAG_Y_RESOLUTION), 300, 1));
+                ifd.addTIFFField(new TIFFField(baseline.getTag(BaselineTIFFTagSet.TAG_RESOLUTION_UNIT),
+                        BaselineTIFFTagSet.RESOLUTION_UNIT_INCH));
+
+                ExifTIFFTagSet exifTags = ExifTIFFTagSet.getInstance();
+                TIFFDirectory exif = new TIFFDirectory(new ExifTIFFTagSet[] { exifTags }, null);
+                exif.addTIFFField(rational(exifTags.getTag(ExifTIFFTagSet.TAG_EXPOSURE_TIME), 1, 125));
+                exif.addTIFFField(rational(exifTags.getTag(ExifTIFFTagSet.TAG_F_NUMBER), 56, 10));
+                exif.addTIFFField(new TIFFField(exifTags.getTag(ExifTIFFTagSet.TAG_ISO_SPEED_RATINGS), TIFFTag.TIFF_SHORT, 1,
+                        new char[] { 200 }));
+                TIFFTag exifPointer = ExifParentTIFFTagSet.getInstance().getTag(ExifParentTIFFTagSet.TAG_EXIF_IFD_POINTER);
+                // the offset is replaced when the directory is written
+                ifd.addTIFFField(new TIFFField(exifPointer, TIFFTag.TIFF_LONG, 1L, exif));
+                metadata = ifd.getAsMetadata();
+            }
+            writer.write(streamMetadata, new IIOImage(image, null, metadata), param);
+        } finally {
+            writer.dispose();
+        }
+        return file;
+    }
+
+    /**
+     * Writes a JPEG with a JFIF density of 150 dpi and optionally an EXIF segment containing the given TIFF structure.
+     */
+    private Path writeJpeg(String name, BufferedImage image, byte[] exifTiff) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+            String format = metadata.getNativeMetadataFormatName();
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+            IIOMetadataNode jfif = (IIOMetadataNode) root.getElementsByTagName("app0JFIF").item(0);
+            jfif.setAttribute("resUnits", "1");
+            jfif.setAttribute("Xdensity", "150");
+            jfif.setAttribute("Ydensity", "150");
+            if (exifTiff != null) {
+                ByteArrayOutputStream app1 = new ByteArrayOutputStream();
+                app1.write("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1));
+                app1.write(exifTiff);
+                IIOMetadataNode unknown = new IIOMetadataNode("unknown");
+                unknown.setAttribute("MarkerTag", "225");
+                unknown.setUserObject(app1.toByteArray());
+                IIOMetadataNode markerSequence = (IIOMetadataNode) root.getElementsByTagName("markerSequence").item(0);
+                markerSequence.insertBefore(unknown, markerSequence.getFirstChild());
+            }
+            metadata.setFromTree(format, root);
+            writer.write(null, new IIOImage(image, null, metadata), param);
+        } finally {
+            writer.dispose();
+        }
+        return file;
+    }
+
+    /**
+     * @return JHOVE with only the TIFF and JPEG modules, the comparison is skipped if JHOVE can't be initialized in the test environment
+     */
+    private JhoveAnalyzerPool jhove() throws IOException {
+        File config = folder.newFile("jhove.conf");
+        Files.writeString(config.toPath(), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<jhoveConfig version=\"1.0\" xmlns=\"http://schema.openpreservation.org/ois/xml/ns/jhove/jhoveConfig\">\n"
+                + "  <jhoveHome>" + folder.getRoot().getAbsolutePath() + "</jhoveHome>\n"
+                + "  <defaultEncoding>utf-8</defaultEncoding>\n"
+                + "  <tempDirectory>" + folder.getRoot().getAbsolutePath() + "</tempDirectory>\n"
+                + "  <bufferSize>131072</bufferSize>\n"
+                + "  <mixVersion>2.0</mixVersion>\n"
+                + "  <module><class>edu.harvard.hul.ois.jhove.module.TiffModule</class></module>\n"
+                + "  <module><class>edu.harvard.hul.ois.jhove.module.JpegModule</class></module>\n"
+                + "</jhoveConfig>\n", StandardCharsets.UTF_8);
+        JhoveAnalyzerPool analyzers = JhoveAnalyzerPool.forConfiguration(config);
+        try {
+            analyzers.release(analyzers.acquire());
+        } catch (Exception e) {
+            Assume.assumeNoException("JHOVE could not be initialized", e);
+        }
+        return analyzers;
+    }
+
+    private static Element jhoveMix(JhoveAnalyzerPool analyzers, Path image) throws Exception {
+        JhoveAnalyzer analyzer = analyzers.acquire();
+        try {
+            JhoveResult result = analyzer.analyze(image, null, null, Set.of(), false);
+            return result.getMixElements().get(0);
+        } finally {
+            analyzers.release(analyzer);
+        }
+    }
+
+    private static BufferedImage rgb(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    private static BufferedImage gray(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    private static TIFFField ascii(TIFFTag tag, String value) {
+        return new TIFFField(tag, TIFFTag.TIFF_ASCII, 1, new String[] { value });
+    }
+
+    private static TIFFField rational(TIFFTag tag, long numerator, long denominator) {
+        return new TIFFField(tag, TIFFTag.TIFF_RATIONAL, 1, new long[][] { { numerator, denominator } });
+    }
+
+    private static String text(Element mix, String... path) {
+        Element element = mix;
+        for (String name : path) {
+            element = element.getChild(name, MIX);
+            if (element == null) {
+                return null;
+            }
+        }
+        return element.getTextTrim();
+    }
+
+    private static List<String> bitsPerSample(Element mix) {
+        List<String> values = new ArrayList<>();
+        Element bits = mix.getChild("ImageAssessmentMetadata", MIX);
+        bits = bits == null ? null : bits.getChild("ImageColorEncoding", MIX);
+        bits = bits == null ? null : bits.getChild("BitsPerSample", MIX);
+        if (bits != null) {
+            for (Element value : bits.getChildren("bitsPerSampleValue", MIX)) {
+                values.add(value.getTextTrim());
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,134 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ImagePipelineTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testResultsInInputOrder() throws Exception {
+        List<Path> images = images(20);
+        List<String> results = new ArrayList<>();
+        // the first images take longest, so later images finish first
+        try (ImagePipeline<String> pipeline = new ImagePipeline<>(images, executor, 4, image -> {
+            int number = Integer.parseInt(image.getFileName().toString().replace(".tif", ""));
+            Thread.sleep(Math.max(0, 20 - number));
+            return image.getFileName().toString();
+        })) {
+            pipeline.start();
+            while (pipeline.hasNext()) {
+                results.add(pipeline.next());
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        images.forEach(image -> expected.add(image.getFileName().toString()));
+        assertEquals(expected, results);
+    }
+
+    @Test
+    public void testQueueIsBounded() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        try (ImagePipeline<Path> pipeline = new ImagePipeline<>(images(10), executor, 3, image -> {
+            started.incrementAndGet();
+            release.await();
+            return image;
+        })) {
+            pipeline.start();
+            Thread.sleep(100);
+            // only the queued images are processed while nothing is consumed
+            assertEquals(3, started.get());
+            release.countDown();
+            int consumed = 0;
+            while (pipeline.hasNext()) {
+                pipeline.next();
+                consumed++;
+            }
+            assertEquals(10, consumed);
+            assertEquals(10, started.get());
+        }
+    }
+
+    @Test
+    public void testFailureOfImage() throws Exception {
+        IllegalStateException failure = new IllegalStateException("broken image");
+        try (ImagePipeline<Path> pipeline = new ImagePipeline<>(images(3), executor, 2, image -> {
+            if (image.endsWith("2.tif")) {
+                throw failure;
+            }
+            return image;
+        })) {
+            pipeline.start();
+            assertTrue(pipeline.next().endsWith("1.tif"));
+            try {
+                pipeline.next();
+                fail("The failure of the image was not reported");
+            } catch (IOException e) {
+                assertSame(failure, e.getCause());
+            }
+            // the following images are not affected
+            assertTrue(pipeline.next().endsWith("3.tif"));
+            assertFalse(pipeline.hasNext());
+        }
+    }
+
+    @Test
+    public void testCloseCancelsPendingImages() throws Exception {
+        CountDownLatch running = new CountDownLatch(2);
+        CountDownLatch interrupted = new CountDownLatch(2);
+        ImagePipeline<Path> pipeline = new ImagePipeline<>(images(10), executor, 2, image -> {
+            running.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return image;
+        });
+        pipeline.start();
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        pipeline.close();
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        // the executor of the caller stays usable
+        assertEquals("still running", executor.submit(() -> "still running").get());
+    }
+
+    private static List<Path> images(int count) {
+        List<Path> images = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            images.add(Paths.get("/images/" + i + ".tif"));
+        }
+        return images;
+    }
+}
@@ -0,0 +1,77 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class JhoveAnalyzerPoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAnalyzersAreReused() throws Exception {
+        JhoveAnalyzerPool pool = JhoveAnalyzerPool.forConfiguration(config());
+        JhoveAnalyzer first = acquire(pool);
+        pool.release(first);
+        assertSame(first, pool.acquire());
+
+        // analyzers in use are never handed out twice
+        JhoveAnalyzer second = pool.acquire();
+        assertNotSame(first, second);
+        pool.release(second);
+        pool.release(first);
+
+        // as many analyzers are kept as were used at the same time, the last released one is handed out first
+        assertSame(first, pool.acquire());
+        assertSame(second, pool.acquire());
+    }
+
+    @Test
+    public void testPoolFollowsConfiguration() throws Exception {
+        File config = config();
+        JhoveAnalyzerPool pool = JhoveAnalyzerPool.forConfiguration(config);
+        pool.release(acquire(pool));
+        assertSame(pool, JhoveAnalyzerPool.forConfiguration(config));
+
+        // a modified configuration file replaces the pool
+        config.setLastModified(config.lastModified() - 60000);
+        JhoveAnalyzerPool modified = JhoveAnalyzerPool.forConfiguration(config);
+        assertNotSame(pool, modified);
+        assertSame(modified, JhoveAnalyzerPool.forConfiguration(config));
+    }
+
+    /**
+     * @return an analyzer of the pool, the test is skipped if JHOVE can't be initialized in the test environment
+     */
+    private static JhoveAnalyzer acquire(JhoveAnalyzerPool pool) {
+        try {
+            return pool.acquire();
+        } catch (Exception e) {
+            Assume.assumeNoException("JHOVE could not be initialized", e);
+            return null;
+        }
+    }
+
+    private File config() throws Exception {
+        File config = folder.newFile("jhove.conf");
+        Files.writeString(config.toPath(), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<jhoveConfig version=\"1.0\" xmlns=\"http://schema.openpreservation.org/ois/xml/ns/jhove/jhoveConfig\">\n"
+                + "  <jhoveHome>" + folder.getRoot().getAbsolutePath() + "</jhoveHome>\n"
+                + "  <defaultEncoding>utf-8</defaultEncoding>\n"
+                + "  <tempDirectory>" + folder.getRoot().getAbsolutePath() + "</tempDirectory>\n"
+                + "  <bufferSize>131072</bufferSize>\n"
+                + "  <mixVersion>2.0</mixVersion>\n"
+                + "  <module><class>edu.harvard.hul.ois.jhove.module.TiffModule</class></module>\n"
+                + "</jhoveConfig>\n", StandardCharsets.UTF_8);
+        return config;
+    }
+}
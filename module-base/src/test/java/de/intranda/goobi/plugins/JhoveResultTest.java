@@ -0,0 +1,50 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.jdom2.Element;
+import org.jdom2.input.SAXBuilder;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+
+public class JhoveResultTest {
+
+    private static final String JHOVE_OUTPUT = "<?xml version=\"1.0\"?>"
+            + "<jhove xmlns=\"http://hul.harvard.edu/ois/xml/ns/jhove\"><repInfo><properties>"
+            + "<property><name>ExposureTime</name><values/></property>"
+            + "<property><name>Entry</name><values><value>outer</value>"
+            + "<property><name>FNumber</name><values><value>28/10</value><value>2</value></values></property></values></property>"
+            + "<property><name>Exif</name><values><property><name>Make</name><values><value>Canon &amp; Co</value></values></property></values>"
+            + "</property>"
+            + "<property><name>NisoImageMetadata</name><values><value><mix:mix xmlns:mix=\"http://www.loc.gov/mix/v20\">"
+            + "<mix:BasicDigitalObjectInformation><mix:byteOrder>little endian</mix:byteOrder></mix:BasicDigitalObjectInformation>"
+            + "</mix:mix></value></values></property>"
+            + "<property><name>FNumber</name><values><value>99</value></values></property>"
+            + "<property><name>ExposureTime</name><values><value>1/125</value></values></property>"
+            + "</properties></repInfo></jhove>";
+
+    private static final Set<String> PROPERTY_NAMES = Set.of("FNumber", "Make", "Exif", "Entry", "ExposureTime");
+
+    @Test
+    public void testStreamMatchesScan() throws Exception {
+        JhoveResult scanned = JhoveResult.scan(new SAXBuilder().build(new StringReader(JHOVE_OUTPUT)), PROPERTY_NAMES);
+        JhoveResult streamed = JhoveResult.stream(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(JHOVE_OUTPUT)),
+                PROPERTY_NAMES);
+
+        assertEquals(scanned.getProperties(), streamed.getProperties());
+        assertEquals("28/10", streamed.getProperties().get("FNumber"));
+        assertEquals("Canon & Co", streamed.getProperties().get("Exif"));
+        assertEquals("1/125", streamed.getProperties().get("ExposureTime"));
+        assertNull(streamed.getDocument());
+
+        assertEquals(1, streamed.getMixElements().size());
+        Element mix = streamed.getMixElements().get(0);
+        assertEquals(MixMetadataEnrichmentPlugin.NAMESPACE_MIX, mix.getNamespace());
+        assertEquals("little endian", mix.getChild("BasicDigitalObjectInformation", MixMetadataEnrichmentPlugin.NAMESPACE_MIX)
+                .getChildText("byteOrder", MixMetadataEnrichmentPlugin.NAMESPACE_MIX));
+    }
+}
@@ -0,0 +1,29 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050_000_000L, histogram.getTotalNanos());
+        assertEquals(100_000_000L, histogram.getMaxNanos());
+        // 50 ms falls into the bucket below 2^16 microseconds
+        assertEquals(65_536_000L, histogram.percentileNanos(0.5));
+        // the upper bound of the last bucket is limited by the maximum
+        assertEquals(100_000_000L, histogram.percentileNanos(0.95));
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        assertEquals(0, new LatencyHistogram().percentileNanos(0.95));
+    }
+}
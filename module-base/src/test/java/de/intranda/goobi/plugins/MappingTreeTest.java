@@ -0,0 +1,67 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+import org.junit.Test;
+
+public class MappingTreeTest {
+
+    private static final Namespace NAMESPACE_MIX = Namespace.getNamespace("mix", "http://www.loc.gov/mix/v20");
+    private static final String IMAGE_DATA = "ImageCaptureMetadata/DigitalCameraCapture/CameraCaptureSettings/ImageData/";
+
+    @Test
+    public void testSharedPathIsCreatedOnce() {
+        Element mix = new Element("mix", NAMESPACE_MIX);
+        MappingTree tree = new MappingTree(List.of(mapping("FNumber", IMAGE_DATA + "fNumber", "rational2real"),
+                mapping("MaxApertureValue", IMAGE_DATA + "maxApertureValue", "rational2rationalType")));
+
+        tree.apply(mix, JhoveResult.of(mix, Map.of("FNumber", "28/10", "MaxApertureValue", "297/100")));
+
+        assertEquals(1, mix.getChildren().size());
+        Element imageData = imageData(mix);
+        assertEquals("2.8", imageData.getChildText("fNumber", NAMESPACE_MIX));
+        Element maxApertureValue = imageData.getChild("maxApertureValue", NAMESPACE_MIX);
+        assertEquals("297", maxApertureValue.getChildText("numerator", NAMESPACE_MIX));
+        assertEquals("100", maxApertureValue.getChildText("denominator", NAMESPACE_MIX));
+    }
+
+    @Test
+    public void testExistingElementsAreReused() {
+        Element mix = new Element("mix", NAMESPACE_MIX);
+        Element capture = new Element("ImageCaptureMetadata", NAMESPACE_MIX);
+        mix.addContent(capture);
+        MappingTree tree = new MappingTree(List.of(mapping("ISOSpeedRatings", IMAGE_DATA + "isoSpeedRatings", null)));
+
+        tree.apply(mix, JhoveResult.of(mix, Map.of("ISOSpeedRatings", "200")));
+
+        assertEquals(1, mix.getChildren().size());
+        assertEquals("200", imageData(mix).getChildText("isoSpeedRatings", NAMESPACE_MIX));
+    }
+
+    @Test
+    public void testNothingIsCreatedWithoutValue() {
+        Element mix = new Element("mix", NAMESPACE_MIX);
+        MappingTree tree = new MappingTree(List.of(mapping("FNumber", IMAGE_DATA + "fNumber", "rational2real")));
+
+        tree.apply(mix, JhoveResult.of(mix, Map.of()));
+
+        assertNull(mix.getChild("ImageCaptureMetadata", NAMESPACE_MIX));
+    }
+
+    private static ExtraMapping mapping(String propertyName, String target, String transform) {
+        return new ExtraMapping("//jhove:property[jhove:name='" + propertyName + "']//jhove:value[1]", target, transform);
+    }
+
+    private static Element imageData(Element mix) {
+        return mix.getChild("ImageCaptureMetadata", NAMESPACE_MIX)
+                .getChild("DigitalCameraCapture", NAMESPACE_MIX)
+                .getChild("CameraCaptureSettings", NAMESPACE_MIX)
+                .getChild("ImageData", NAMESPACE_MIX);
+    }
+}
@@ -0,0 +1,63 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+import org.junit.Test;
+
+public class MixElementSorterTest {
+
+    private static final Namespace NAMESPACE_MIX = Namespace.getNamespace("mix", "http://www.loc.gov/mix/v20");
+
+    @Test
+    public void testFixOrder() throws Exception {
+        Element mix = new Element("mix", NAMESPACE_MIX);
+        mix.addContent(new Element("ImageCaptureMetadata", NAMESPACE_MIX));
+        mix.addContent(new Element("BasicImageInformation", NAMESPACE_MIX));
+        mix.addContent(new Element("BasicDigitalObjectInformation", NAMESPACE_MIX));
+
+        new MixElementSorter().fixOrder(mix);
+
+        assertEquals(List.of("BasicDigitalObjectInformation", "BasicImageInformation", "ImageCaptureMetadata"), childNames(mix));
+    }
+
+    @Test
+    public void testUnknownElementsAreMovedToTheEnd() throws Exception {
+        Element mix = new Element("mix", NAMESPACE_MIX);
+        mix.addContent(new Element("unknownB", NAMESPACE_MIX));
+        mix.addContent(new Element("ImageCaptureMetadata", NAMESPACE_MIX));
+        mix.addContent(new Element("unknownA", NAMESPACE_MIX));
+        mix.addContent(new Element("BasicDigitalObjectInformation", NAMESPACE_MIX));
+
+        new MixElementSorter().fixOrder(mix);
+
+        assertEquals(List.of("BasicDigitalObjectInformation", "ImageCaptureMetadata", "unknownB", "unknownA"), childNames(mix));
+    }
+
+    @Test
+    public void testFixOrderUsesParentContext() throws Exception {
+        Element mix = new Element("mix", NAMESPACE_MIX);
+        Element imageData = new Element("ImageData", NAMESPACE_MIX);
+        mix.addContent(new Element("ImageCaptureMetadata", NAMESPACE_MIX)
+                .addContent(new Element("DigitalCameraCapture", NAMESPACE_MIX)
+                        .addContent(new Element("CameraCaptureSettings", NAMESPACE_MIX)
+                                .addContent(imageData))));
+        imageData.addContent(new Element("maxApertureValue", NAMESPACE_MIX));
+        imageData.addContent(new Element("exposureTime", NAMESPACE_MIX));
+        imageData.addContent(new Element("fNumber", NAMESPACE_MIX));
+        // declared in the schema, but not as a child of ImageData
+        imageData.addContent(new Element("imageWidth", NAMESPACE_MIX));
+
+        new MixElementSorter().fixOrder(mix);
+
+        assertEquals(List.of("fNumber", "exposureTime", "maxApertureValue", "imageWidth"), childNames(imageData));
+    }
+
+    private List<String> childNames(Element element) {
+        return element.getChildren().stream().map(Element::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,78 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.goobi.production.enums.PluginReturnValue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MixMetadataBatchEnrichmentTest {
+
+    @Test
+    public void testBackPressure() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        // the first process is slow, all others are done at once
+        MixMetadataBatchEnrichment batch = new MixMetadataBatchEnrichment(2, 1, processId -> {
+            started.incrementAndGet();
+            if (processId == 1) {
+                firstStarted.countDown();
+                releaseFirst.await();
+            }
+            return PluginReturnValue.FINISH;
+        });
+
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Map<Integer, PluginReturnValue>> results = caller.submit(() -> batch.run(ids(20)));
+            assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+            Thread.sleep(200);
+            // no more processes are submitted than are enriched and waiting while the oldest one is not done
+            assertEquals(3, started.get());
+
+            releaseFirst.countDown();
+            assertEquals(20, results.get(10, TimeUnit.SECONDS).size());
+            assertEquals(20, started.get());
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailuresAreCounted() throws Exception {
+        MixMetadataBatchEnrichment batch = new MixMetadataBatchEnrichment(3, 2, processId -> {
+            if (processId % 5 == 0) {
+                throw new IllegalStateException("process " + processId + " is broken");
+            }
+            return processId % 3 == 0 ? PluginReturnValue.ERROR : PluginReturnValue.FINISH;
+        });
+
+        Map<Integer, PluginReturnValue> results = batch.run(ids(15));
+        // the results are in the order of the ids, a failed process does not stop the others
+        assertEquals(ids(15), new ArrayList<>(results.keySet()));
+        for (Map.Entry<Integer, PluginReturnValue> result : results.entrySet()) {
+            int processId = result.getKey();
+            PluginReturnValue expected = processId % 5 == 0 || processId % 3 == 0 ? PluginReturnValue.ERROR : PluginReturnValue.FINISH;
+            assertEquals("process " + processId, expected, result.getValue());
+        }
+    }
+
+    private static List<Integer> ids(int count) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            ids.add(i);
+        }
+        return ids;
+    }
+}
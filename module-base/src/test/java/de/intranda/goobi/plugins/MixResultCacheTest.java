@@ -0,0 +1,110 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.jdom2.Element;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class MixResultCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        MixResultCache cache = MixResultCache.forDirectory(folder.getRoot().toPath(), 1024 * 1024, 10);
+        String key = key("aa", "jhove");
+        assertNull(cache.get(key));
+        cache.put(key, mix("100"));
+        assertEquals("100", cache.get(key).getChildText("imageWidth", MixMetadataEnrichmentPlugin.NAMESPACE_MIX));
+        // every lookup returns a copy that may be changed
+        assertNotSame(cache.get(key), cache.get(key));
+
+        // a new instance of the same directory reads the entry from the disk
+        MixResultCache reopened = MixResultCache.forDirectory(folder.getRoot().toPath(), 2 * 1024 * 1024, 10);
+        assertNotSame(cache, reopened);
+        assertEquals("100", reopened.get(key).getChildText("imageWidth", MixMetadataEnrichmentPlugin.NAMESPACE_MIX));
+    }
+
+    @Test
+    public void testInstanceFollowsLimits() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        MixResultCache cache = MixResultCache.forDirectory(directory, 1024 * 1024, 10);
+        assertSame(cache, MixResultCache.forDirectory(directory, 1024 * 1024, 10));
+        assertNotSame(cache, MixResultCache.forDirectory(directory, 1024 * 1024, 20));
+    }
+
+    @Test
+    public void testContextChangesKey() {
+        String digest = "ab".repeat(32);
+        assertEquals(MixResultCache.key(digest, MixResultCache.contextDigest("jhove", "mappings")),
+                MixResultCache.key(digest, MixResultCache.contextDigest("jhove", "mappings")));
+        assertNotEquals(MixResultCache.key(digest, MixResultCache.contextDigest("jhove", "mappings")),
+                MixResultCache.key(digest, MixResultCache.contextDigest("jhove", "other mappings")));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        MixResultCache cache = MixResultCache.forDirectory(directory, 1024 * 1024, 10);
+        String first = key("aa", "jhove");
+        String second = key("bb", "jhove");
+        cache.put(first, mix("1"));
+        cache.put(second, mix("2"));
+        long size = Files.size(entry(directory, first));
+        setAccessTime(directory, first, 1000);
+        setAccessTime(directory, second, 2000);
+        // the hit in memory counts as use of the file
+        cache.get(first);
+        assertTrue(Files.getLastModifiedTime(entry(directory, first)).toMillis() > 2000);
+
+        // the limit allows two entries, the third one evicts the least recently used
+        MixResultCache limited = MixResultCache.forDirectory(directory, size * 2 + size / 2, 1);
+        limited.put(key("cc", "jhove"), mix("3"));
+        assertTrue(Files.exists(entry(directory, first)));
+        assertFalse(Files.exists(entry(directory, second)));
+    }
+
+    @Test
+    public void testRemovesStaleTempFilesOnOpen() throws Exception {
+        Path directory = folder.newFolder("cache").toPath();
+        Path subDirectory = Files.createDirectories(directory.resolve("aa"));
+        Path stale = Files.createFile(subDirectory.resolve("aa1.tmp"));
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 2 * 60 * 60 * 1000L));
+        Path recent = Files.createFile(subDirectory.resolve("aa2.tmp"));
+
+        MixResultCache.forDirectory(directory, 1024 * 1024, 10);
+        assertFalse(Files.exists(stale));
+        // may still be written by another process
+        assertTrue(Files.exists(recent));
+    }
+
+    private static String key(String prefix, String context) {
+        return MixResultCache.key(prefix.repeat(32), MixResultCache.contextDigest(context));
+    }
+
+    private static Path entry(Path directory, String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".xml");
+    }
+
+    private static void setAccessTime(Path directory, String key, long millis) throws Exception {
+        Files.setLastModifiedTime(entry(directory, key), FileTime.fromMillis(millis));
+    }
+
+    private static Element mix(String imageWidth) {
+        Element mix = new Element("mix", MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+        return mix.addContent(new Element("imageWidth", MixMetadataEnrichmentPlugin.NAMESPACE_MIX).setText(imageWidth));
+    }
+}
@@ -0,0 +1,55 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.file.Paths;
+
+public class ModuleSelectorTest {
+
+    @Test
+    public void testSelectByExtension() throws Exception {
+        ModuleSelector selector = selector("<module extension=\"tif, TIFF\">TIFF-hul</module>"
+                + "<module extension=\"jpg,jpeg\">JPEG-hul</module>");
+
+        assertEquals("TIFF-hul", selector.select(Paths.get("/images/00000001.tif")));
+        assertEquals("TIFF-hul", selector.select(Paths.get("/images/00000001.TIF")));
+        assertEquals("TIFF-hul", selector.select(Paths.get("/images/00000001.tiff")));
+        assertEquals("JPEG-hul", selector.select(Paths.get("/images/00000001.jpeg")));
+        // without a matching entry JHOVE detects the format itself
+        assertNull(selector.select(Paths.get("/images/00000001.jp2")));
+        assertNull(selector.select(Paths.get("/images/00000001")));
+    }
+
+    @Test
+    public void testEntriesWithoutModuleAreIgnored() throws Exception {
+        ModuleSelector selector = selector("<module extension=\"tif\"> </module><module extension=\",jpg,\">JPEG-hul</module>");
+
+        assertNull(selector.select(Paths.get("/images/00000001.tif")));
+        assertEquals("JPEG-hul", selector.select(Paths.get("/images/00000001.jpg")));
+    }
+
+    @Test
+    public void testSignature() throws Exception {
+        String tiff = "<module extension=\"tif\">TIFF-hul</module>";
+        String jpeg = "<module extension=\"jpg\" mimeType=\"image/jpeg\">JPEG-hul</module>";
+
+        // the order of the configuration does not matter
+        assertEquals(selector(tiff + jpeg).signature(), selector(jpeg + tiff).signature());
+        assertNotEquals(selector(tiff).signature(), selector(tiff + jpeg).signature());
+        assertNotEquals(selector(tiff).signature(), selector("<module extension=\"tif\">JPEG-hul</module>").signature());
+    }
+
+    private static ModuleSelector selector(String modules) throws Exception {
+        XMLConfiguration config = new XMLConfiguration();
+        config.load(new StringReader("<config><modules>" + modules + "</modules></config>"));
+        config.setExpressionEngine(new XPathExpressionEngine());
+        return new ModuleSelector(config.configurationsAt("modules/module"));
+    }
+}
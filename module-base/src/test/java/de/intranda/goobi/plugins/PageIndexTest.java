@@ -0,0 +1,93 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import ugh.dl.DigitalDocument;
+import ugh.dl.DocStruct;
+import ugh.dl.Prefs;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class PageIndexTest {
+
+    private Prefs prefs;
+    private DigitalDocument dd;
+    private DocStruct book;
+
+    @Before
+    public void setUp() throws Exception {
+        String resourcesFolder = "src/test/resources/"; // for junit tests in eclipse
+        if (!Files.exists(Paths.get(resourcesFolder))) {
+            resourcesFolder = "target/test-classes/"; // to run mvn test from cli or in jenkins
+        }
+        prefs = new Prefs();
+        prefs.loadPrefs(resourcesFolder + "ruleset.xml");
+        dd = new DigitalDocument();
+        book = dd.createDocStruct(prefs.getDocStrctTypeByName("BoundBook"));
+        dd.setPhysicalDocStruct(book);
+    }
+
+    @Test
+    public void testFindByBasename() throws Exception {
+        DocStruct first = addPage("00000001.tif");
+        DocStruct second = addPage("00000002.jpg");
+        PageIndex index = new PageIndex(book);
+
+        // the extension of the image may differ from the one in the mets file
+        assertSame(first, index.find("00000001.jp2"));
+        assertSame(second, index.find("00000002.tif"));
+        assertNull(index.find("00000003.tif"));
+        assertEquals("00000002", PageIndex.basename("00000002.tif"));
+        assertEquals("00000002", PageIndex.basename("00000002"));
+    }
+
+    @Test
+    public void testDuplicateImageNames() throws Exception {
+        DocStruct first = addPage("00000001.tif");
+        addPage("00000001.jpg");
+        PageIndex index = new PageIndex(book);
+
+        // the first page of the physical structure gets the MIX metadata
+        assertSame(first, index.find("00000001.tif"));
+        // a second image of the same page is still matched
+        assertSame(first, index.find("00000001.jp2"));
+        assertEquals(List.of(), index.getUnmatchedPages());
+    }
+
+    @Test
+    public void testUnmatchedPages() throws Exception {
+        addPage("00000001.tif");
+        addPage("00000002.tif");
+        addPage("00000003.tif");
+        PageIndex index = new PageIndex(book);
+
+        index.find("00000002.tif");
+        // a lookup does not mark the page as linked
+        index.lookup("00000003.tif");
+        assertEquals(List.of("00000001.tif", "00000003.tif"), index.getUnmatchedPages());
+    }
+
+    @Test
+    public void testPagesWithoutImages() throws Exception {
+        addPage(null);
+        PageIndex index = new PageIndex(book);
+        assertEquals(List.of(), index.getUnmatchedPages());
+
+        DigitalDocument emptyDocument = new DigitalDocument();
+        DocStruct emptyBook = emptyDocument.createDocStruct(prefs.getDocStrctTypeByName("BoundBook"));
+        assertEquals(List.of(), new PageIndex(emptyBook).getUnmatchedPages());
+    }
+
+    private DocStruct addPage(String imageName) throws Exception {
+        DocStruct page = dd.createDocStruct(prefs.getDocStrctTypeByName("page"));
+        page.setImageName(imageName);
+        book.addChild(page);
+        return page;
+    }
+}
@@ -0,0 +1,81 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RationalTest {
+
+    @Test
+    public void testParse() {
+        Rational rational = Rational.parse("28/10");
+        assertEquals(28, rational.getNumerator());
+        assertEquals(10, rational.getDenominator());
+        assertEquals(2.8, rational.doubleValue(), 0);
+    }
+
+    @Test
+    public void testSignIsKeptInTheNumerator() {
+        assertEquals("-1/3", Rational.parse("-1/3").toString());
+        assertEquals("-1/3", Rational.parse("1/-3").toString());
+        assertEquals("1/3", Rational.parse(" -1/-3 ").toString());
+        assertEquals("1/3", Rational.parse("+1/3").toString());
+    }
+
+    @Test
+    public void testWhitespaceAroundTheNumbers() {
+        assertEquals("1/2", Rational.parse("1 / 2").toString());
+        assertEquals("-1/2", Rational.parse(" -1\t/ 2 ").toString());
+    }
+
+    @Test
+    public void testQuotientOfDecimals() {
+        assertEquals(0.5, Rational.quotient("1 / 2"), 0);
+        assertEquals(0.75, Rational.quotient("1.5/2"), 0);
+        assertEquals(0.75, Rational.quotient("1.5 / 2.0"), 0);
+        assertEquals(2.8, Rational.quotient("28/10"), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQuotientOfNoNumber() {
+        Rational.quotient("a/b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQuotientWithZeroDenominator() {
+        Rational.quotient("1.5/0.0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecimalsAreNoRational() {
+        Rational.parse("1.5/2");
+    }
+
+    @Test
+    public void testIsRational() {
+        assertTrue(Rational.isRational("1/125"));
+        assertFalse(Rational.isRational("200"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroDenominator() {
+        Rational.parse("0/0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingDenominator() {
+        Rational.parse("1/");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoNumber() {
+        Rational.parse("a/b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyDigits() {
+        Rational.parse("1/12345678901234567890");
+    }
+}
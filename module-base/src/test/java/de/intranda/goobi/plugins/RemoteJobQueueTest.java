@@ -0,0 +1,148 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+public class RemoteJobQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testClaimAndComplete() throws Exception {
+        RemoteJobQueue queue = new RemoteJobQueue(folder.getRoot().toPath());
+        Path image = Paths.get("/images/00000001.tif").toAbsolutePath();
+        String id = queue.submit(image, "TIFF-hul");
+
+        RemoteJobQueue.Job job = queue.claim("worker-1");
+        assertEquals(id, job.getId());
+        assertEquals(image, job.getImage());
+        assertEquals("TIFF-hul", job.getModuleName());
+        // every job is handed out only once
+        assertNull(queue.claim("worker-2"));
+
+        queue.complete(job, "<jhove/>");
+        assertFalse(Files.exists(job.getClaimedFile()));
+        assertEquals("<jhove/>", queue.await(id, image, 1000));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        RemoteJobQueue queue = new RemoteJobQueue(folder.getRoot().toPath());
+        Path image = Paths.get("/images/00000001.tif");
+        String id = queue.submit(image, null);
+
+        RemoteJobQueue.Job job = queue.claim("worker-1");
+        assertNull(job.getModuleName());
+        queue.fail(job, new IOException("file is damaged"));
+        try {
+            queue.await(id, image, 1000);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().endsWith("IOException: file is damaged"));
+        }
+    }
+
+    @Test
+    public void testTimeoutWithdrawsJob() throws Exception {
+        RemoteJobQueue queue = new RemoteJobQueue(folder.getRoot().toPath());
+        Path image = Paths.get("/images/00000001.tif");
+        String id = queue.submit(image, null);
+        try {
+            queue.await(id, image, 50);
+            fail();
+        } catch (IOException e) {
+            assertNull(queue.claim("worker-1"));
+        }
+    }
+
+    @Test
+    public void testInterruptWithdrawsJob() throws Exception {
+        RemoteJobQueue queue = new RemoteJobQueue(folder.getRoot().toPath());
+        Path image = Paths.get("/images/00000001.tif");
+        String id = queue.submit(image, null);
+        Thread.currentThread().interrupt();
+        try {
+            queue.await(id, image, 10_000);
+            fail();
+        } catch (InterruptedException e) {
+            assertNull(queue.claim("worker-1"));
+        }
+    }
+
+    @Test
+    public void testLateResultOfClaimedJobIsDiscarded() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        RemoteJobQueue queue = new RemoteJobQueue(directory);
+        Path image = Paths.get("/images/00000001.tif");
+        String id = queue.submit(image, null);
+        RemoteJobQueue.Job job = queue.claim("worker-1");
+        try {
+            queue.await(id, image, 50);
+            fail();
+        } catch (IOException e) {
+            assertTrue(queue.isWithdrawn(job));
+        }
+
+        // the worker finishes after the plugin stopped waiting
+        queue.complete(job, "<jhove/>");
+        assertFalse(queue.isWithdrawn(job));
+        assertEquals(0, countFiles(directory.resolve("results")));
+        assertEquals(0, countFiles(directory.resolve("claimed")));
+        assertEquals(0, countFiles(directory.resolve("withdrawn")));
+    }
+
+    @Test
+    public void testDamagedJobIsFailed() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        RemoteJobQueue queue = new RemoteJobQueue(directory);
+        Files.writeString(directory.resolve("jobs").resolve("damaged.job"), "module=TIFF-hul\n");
+        assertNull(queue.claim("worker-1"));
+        assertEquals(0, countFiles(directory.resolve("claimed")));
+        try {
+            queue.await("damaged", Paths.get("/images/00000001.tif"), 1000);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().endsWith("IOException: The job does not name an image"));
+        }
+    }
+
+    @Test
+    public void testSweepRemovesOldFiles() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        RemoteJobQueue queue = new RemoteJobQueue(directory);
+        Path image = Paths.get("/images/00000001.tif");
+        queue.submit(image, null);
+        RemoteJobQueue.Job job = queue.claim("crashed-worker");
+        Path tombstone = Files.createFile(directory.resolve("withdrawn").resolve("old"));
+        Files.setLastModifiedTime(job.getClaimedFile(), FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        Files.setLastModifiedTime(tombstone, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        String openId = queue.submit(image, null);
+
+        assertEquals(2, queue.sweep(30_000));
+        assertFalse(Files.exists(job.getClaimedFile()));
+        assertFalse(Files.exists(tombstone));
+        // the new job is kept
+        assertEquals(openId, queue.claim("worker-1").getId());
+    }
+
+    private static long countFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+import org.jdom2.input.SAXBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import ugh.dl.DigitalDocument;
+import ugh.dl.DocStruct;
+import ugh.dl.Md;
+import ugh.dl.Prefs;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TechMdDeduplicatorTest {
+
+    private static final Namespace MIX = MixMetadataEnrichmentPlugin.NAMESPACE_MIX;
+
+    private Prefs prefs;
+    private DigitalDocument dd;
+    private DocStruct book;
+
+    @Before
+    public void setUp() throws Exception {
+        String resourcesFolder = "src/test/resources/"; // for junit tests in eclipse
+        if (!Files.exists(Paths.get(resourcesFolder))) {
+            resourcesFolder = "target/test-classes/"; // to run mvn test from cli or in jenkins
+        }
+        prefs = new Prefs();
+        prefs.loadPrefs(resourcesFolder + "ruleset.xml");
+        dd = new DigitalDocument();
+        book = dd.createDocStruct(prefs.getDocStrctTypeByName("BoundBook"));
+        dd.setPhysicalDocStruct(book);
+    }
+
+    @Test
+    public void testDigestOfIdenticalElements() throws Exception {
+        String xml = "<mix:mix xmlns:mix=\"http://www.loc.gov/mix/v20\">\n"
+                + "  <mix:BasicImageInformation>\n"
+                + "    <mix:BasicImageCharacteristics>\n"
+                + "      <mix:imageWidth>100</mix:imageWidth>\n"
+                + "      <mix:imageHeight>200</mix:imageHeight>\n"
+                + "    </mix:BasicImageCharacteristics>\n"
+                + "  </mix:BasicImageInformation>\n"
+                + "</mix:mix>";
+        Element parsed = new SAXBuilder().build(new StringReader(xml)).detachRootElement();
+
+        // built bottom-up instead of parsed from an indented document
+        Element characteristics = new Element("BasicImageCharacteristics", MIX);
+        characteristics.addContent(new Element("imageHeight", MIX).setText("200"));
+        characteristics.addContent(0, new Element("imageWidth", MIX).setText("100"));
+        Element built = new Element("mix", MIX).addContent(new Element("BasicImageInformation", MIX).addContent(characteristics));
+
+        TechMdDeduplicator deduplicator = new TechMdDeduplicator(dd);
+        String digest = deduplicator.digest(parsed);
+        assertEquals(digest, deduplicator.digest(built));
+
+        characteristics.getChild("imageHeight", MIX).setText("201");
+        assertNotEquals(digest, deduplicator.digest(built));
+    }
+
+    @Test
+    public void testLookupRegisteredSection() throws Exception {
+        TechMdDeduplicator deduplicator = new TechMdDeduplicator(dd);
+        String digest = deduplicator.digest(mix("100"));
+        assertNull(deduplicator.lookup(digest));
+        deduplicator.register(digest, "MIX_0001");
+        assertEquals("MIX_0001", deduplicator.lookup(deduplicator.digest(mix("100"))));
+        assertEquals(1, deduplicator.getSections());
+    }
+
+    @Test
+    public void testLinkReleasesPreviousId() throws Exception {
+        DocStruct page = addPage("OLD");
+        addTechMd("OLD");
+        addTechMd("NEW");
+
+        TechMdDeduplicator deduplicator = new TechMdDeduplicator(dd);
+        deduplicator.link(page, "NEW");
+        assertEquals("NEW", page.getAdmId());
+        assertEquals(1, deduplicator.getPages());
+
+        assertEquals(1, deduplicator.removeUnreferenced(dd));
+        assertEquals(List.of("NEW"), techMdIds());
+    }
+
+    @Test
+    public void testRemoveUnreferencedKeepsReferencedSections() throws Exception {
+        DocStruct first = addPage("SHARED");
+        DocStruct second = addPage("SHARED");
+        DocStruct third = addPage("SHARED");
+        addTechMd("SHARED");
+        addTechMd("NEW");
+
+        TechMdDeduplicator deduplicator = new TechMdDeduplicator(dd);
+        // the first page is detached from the shared section, which is still referred to by the other pages
+        assertNull(deduplicator.exclusiveId(deduplicator.findMixId(first)));
+        first.setAdmId("NEW");
+        assertEquals(0, deduplicator.removeUnreferenced(dd));
+        assertEquals(List.of("SHARED", "NEW"), techMdIds());
+
+        // the section an untouched page still refers to is kept
+        deduplicator.link(second, "NEW");
+        assertEquals(0, deduplicator.removeUnreferenced(dd));
+        assertEquals(List.of("SHARED", "NEW"), techMdIds());
+
+        deduplicator.link(third, "NEW");
+        assertEquals(1, deduplicator.removeUnreferenced(dd));
+        assertEquals(List.of("NEW"), techMdIds());
+    }
+
+    @Test
+    public void testOnlyTheMixIdIsReplaced() throws Exception {
+        DocStruct page = addPage("PREMIS OLD");
+        DocStruct other = addPage("PREMIS");
+        addTechMd("PREMIS", new Element("object", Namespace.getNamespace("premis", "info:lc/xmlns/premis-v2")));
+        addTechMd("OLD");
+        addTechMd("NEW");
+
+        TechMdDeduplicator deduplicator = new TechMdDeduplicator(dd);
+        assertEquals("OLD", deduplicator.findMixId(page));
+        assertNull(deduplicator.findMixId(other));
+
+        deduplicator.link(page, "NEW");
+        assertEquals("PREMIS NEW", page.getAdmId());
+        deduplicator.link(other, "NEW");
+        assertEquals("PREMIS NEW", other.getAdmId());
+
+        // the section of the other metadata is still referred to, only the released MIX section is removed
+        assertEquals(1, deduplicator.removeUnreferenced(dd));
+        assertEquals(List.of("PREMIS", "NEW"), techMdIds());
+    }
+
+    @Test
+    public void testSharedIdAmongSeveralIds() throws Exception {
+        DocStruct first = addPage("SHARED PREMIS");
+        addPage("PREMIS SHARED");
+        addTechMd("PREMIS", new Element("object", Namespace.getNamespace("premis", "info:lc/xmlns/premis-v2")));
+        addTechMd("SHARED");
+
+        TechMdDeduplicator deduplicator = new TechMdDeduplicator(dd);
+        assertNull(deduplicator.exclusiveId(deduplicator.findMixId(first)));
+        TechMdDeduplicator.replaceAdmId(first, "SHARED", "NEW");
+        assertEquals("NEW PREMIS", first.getAdmId());
+    }
+
+    @Test
+    public void testReplaceAddAndDetachThroughIndex() throws Exception {
+        DocStruct first = addPage("PREMIS FIRST");
+        DocStruct second = addPage("SECOND");
+        addTechMd("PREMIS", new Element("object", Namespace.getNamespace("premis", "info:lc/xmlns/premis-v2")));
+        addTechMd("FIRST");
+        addTechMd("SECOND");
+
+        TechMdDeduplicator deduplicator = new TechMdDeduplicator(dd);
+        Md replacement = new Md(mix("replaced"), Md.MdType.TECH_MD);
+        replacement.setId(deduplicator.findMixId(first));
+        deduplicator.replace(dd, replacement);
+        assertEquals(replacement, dd.getTechMds().get(1));
+
+        Md added = new Md(mix("added"), Md.MdType.TECH_MD);
+        added.setId("ADDED");
+        deduplicator.add(dd, added);
+        DocStruct third = addPage("ADDED");
+        assertEquals("ADDED", deduplicator.findMixId(third));
+
+        // the detached section is only removed at the end, the index of the following sections stays valid until then
+        deduplicator.detach(deduplicator.findMixId(second));
+        assertEquals(1, deduplicator.removeDetached(dd));
+        assertEquals(List.of("PREMIS", "FIRST", "ADDED"), techMdIds());
+        Md replacedAgain = new Md(mix("again"), Md.MdType.TECH_MD);
+        replacedAgain.setId("ADDED");
+        deduplicator.replace(dd, replacedAgain);
+        assertEquals(replacedAgain, dd.getTechMds().get(2));
+    }
+
+    private DocStruct addPage(String admId) throws Exception {
+        DocStruct page = dd.createDocStruct(prefs.getDocStrctTypeByName("page"));
+        page.setAdmId(admId);
+        book.addChild(page);
+        return page;
+    }
+
+    private void addTechMd(String id) {
+        addTechMd(id, mix(id));
+    }
+
+    private void addTechMd(String id, Element content) {
+        Md md = new Md(content, Md.MdType.TECH_MD);
+        md.setId(id);
+        dd.addTechMd(md);
+    }
+
+    private List<String> techMdIds() {
+        List<String> ids = new ArrayList<>();
+        for (Md md : dd.getTechMds()) {
+            ids.add(md.getId());
+        }
+        return ids;
+    }
+
+    private static Element mix(String imageWidth) {
+        Element characteristics = new Element("BasicImageCharacteristics", MIX);
+        characteristics.addContent(new Element("imageWidth", MIX).setText(imageWidth));
+        return new Element("mix", MIX).addContent(new Element("BasicImageInformation", MIX).addContent(characteristics));
+    }
+}
@@ -0,0 +1,165 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.easymock.EasyMock;
+import org.jdom2.Element;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import ugh.dl.DigitalDocument;
+import ugh.dl.DocStruct;
+import ugh.dl.Md;
+import ugh.dl.Prefs;
+import ugh.fileformats.mets.MetsMods;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ ConfigurationHelper.class })
+@PowerMockIgnore({ "javax.management.*", "javax.xml.*", "org.xml.*", "org.w3c.*", "javax.net.ssl.*", "jdk.internal.reflect.*" })
+public class TechMdSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String resourcesFolder;
+    private Prefs prefs;
+    private Path metsFile;
+
+    @Before
+    public void setUp() throws Exception {
+        resourcesFolder = "src/test/resources/"; // for junit tests in eclipse
+        if (!Files.exists(Paths.get(resourcesFolder))) {
+            resourcesFolder = "target/test-classes/"; // to run mvn test from cli or in jenkins
+        }
+
+        PowerMock.mockStatic(ConfigurationHelper.class);
+        ConfigurationHelper configurationHelper = EasyMock.createMock(ConfigurationHelper.class);
+        EasyMock.expect(ConfigurationHelper.getInstance()).andReturn(configurationHelper).anyTimes();
+        EasyMock.expect(configurationHelper.useS3()).andReturn(false).anyTimes();
+        EasyMock.expect(configurationHelper.getNumberOfMetaBackups()).andReturn(0).anyTimes();
+        EasyMock.replay(configurationHelper);
+        PowerMock.replay(ConfigurationHelper.class);
+
+        prefs = new Prefs();
+        prefs.loadPrefs(resourcesFolder + "ruleset.xml");
+
+        Path processDirectory = folder.newFolder("1").toPath();
+        metsFile = processDirectory.resolve("meta.xml");
+        Files.copy(Paths.get(resourcesFolder, "meta.xml"), metsFile);
+        Files.copy(Paths.get(resourcesFolder, "meta_anchor.xml"), processDirectory.resolve("meta_anchor.xml"));
+    }
+
+    @Test
+    public void testMergeWithoutAmdSec() throws Exception {
+        MetsMods fileformat = read();
+        DigitalDocument dd = fileformat.getDigitalDocument();
+        List<DocStruct> pages = dd.getPhysicalDocStruct().getAllChildren();
+
+        try (TechMdSpool spool = new TechMdSpool(folder.newFolder("spool").toPath())) {
+            spool.reserveIds(dd);
+            for (DocStruct page : pages) {
+                String id = spool.newId();
+                page.setAdmId(id);
+                spool.add(id, mix(page.getAdmId()));
+            }
+            fileformat.write(metsFile.toString());
+            assertFalse(metsXml().contains("amdSec"));
+
+            spool.mergeInto(metsFile);
+        }
+
+        assertEquals(1, count(metsXml(), "<mets:amdSec"));
+        DigitalDocument merged = read().getDigitalDocument();
+        assertEquals(pages.size(), merged.getTechMds().size());
+        Set<String> techMdIds = ids(merged.getTechMds());
+        for (DocStruct page : merged.getPhysicalDocStruct().getAllChildren()) {
+            assertTrue(page.getAdmId(), techMdIds.contains(page.getAdmId()));
+        }
+    }
+
+    @Test
+    public void testMergeIntoExistingAmdSec() throws Exception {
+        MetsMods fileformat = read();
+        DigitalDocument dd = fileformat.getDigitalDocument();
+        List<DocStruct> pages = dd.getPhysicalDocStruct().getAllChildren();
+        Md existing = new Md(mix("existing"), Md.MdType.TECH_MD);
+        existing.generateId();
+        dd.addTechMd(existing);
+        pages.get(0).setAdmId(existing.getId());
+
+        String spooledId;
+        try (TechMdSpool spool = new TechMdSpool(folder.newFolder("spool").toPath())) {
+            spool.reserveIds(dd);
+            spooledId = spool.newId();
+            assertNotEquals(existing.getId(), spooledId);
+            pages.get(1).setAdmId(spooledId);
+            spool.add(spooledId, mix("spooled"));
+            fileformat.write(metsFile.toString());
+
+            spool.mergeInto(metsFile);
+        }
+
+        String xml = metsXml();
+        assertEquals(1, count(xml, "<mets:amdSec"));
+        assertTrue(xml.contains("existing"));
+        assertTrue(xml.contains("spooled"));
+        DigitalDocument merged = read().getDigitalDocument();
+        assertEquals(Set.of(existing.getId(), spooledId), ids(merged.getTechMds()));
+        List<DocStruct> mergedPages = merged.getPhysicalDocStruct().getAllChildren();
+        assertEquals(existing.getId(), mergedPages.get(0).getAdmId());
+        assertEquals(spooledId, mergedPages.get(1).getAdmId());
+    }
+
+    private MetsMods read() throws Exception {
+        MetsMods fileformat = new MetsMods(prefs);
+        fileformat.read(metsFile.toString());
+        return fileformat;
+    }
+
+    private String metsXml() throws IOException {
+        return Files.readString(metsFile, StandardCharsets.UTF_8);
+    }
+
+    private static Element mix(String marker) {
+        Element mix = new Element("mix", MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+        Element basicDigitalObjectInformation = new Element("BasicDigitalObjectInformation", MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+        basicDigitalObjectInformation.addContent(new Element("objectIdentifierValue", MixMetadataEnrichmentPlugin.NAMESPACE_MIX).setText(marker));
+        return mix.addContent(basicDigitalObjectInformation);
+    }
+
+    private static Set<String> ids(List<Md> techMds) {
+        Set<String> ids = new HashSet<>();
+        for (Md md : techMds) {
+            ids.add(md.getId());
+        }
+        return ids;
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int index = text.indexOf(part); index >= 0; index = text.indexOf(part, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,77 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class WorkSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDirectModeComputesInCallingThread() throws Exception {
+        try (WorkScheduler scheduler = WorkScheduler.direct(2)) {
+            assertFalse(scheduler.isSplit());
+            Thread caller = Thread.currentThread();
+            assertSame(caller, scheduler.compute(Thread::currentThread));
+        }
+    }
+
+    @Test
+    public void testSplitModeComputesOnCpuPool() throws Exception {
+        try (WorkScheduler scheduler = WorkScheduler.split(2, 4)) {
+            assertTrue(scheduler.isSplit());
+            Thread worker = scheduler.getIoExecutor().submit(() -> scheduler.compute(Thread::currentThread)).get();
+            assertNotEquals(Thread.currentThread(), worker);
+            assertEquals("result", scheduler.getIoExecutor().submit(() -> scheduler.compute(() -> "result")).get());
+        }
+    }
+
+    @Test
+    public void testComputeThrowsFailureOfWork() throws Exception {
+        IOException failure = new IOException("broken image");
+        try (WorkScheduler scheduler = WorkScheduler.split(1, 1)) {
+            scheduler.compute(() -> {
+                throw failure;
+            });
+            fail("The failure was not thrown");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        Path small = folder.newFile("small.tif").toPath();
+        Files.write(small, new byte[100]);
+        Path large = folder.newFile("large.tif").toPath();
+        Files.write(large, new byte[3 * 1024 * 1024]);
+        Path empty = folder.newFile("empty.tif").toPath();
+
+        try (WorkScheduler scheduler = WorkScheduler.direct(1)) {
+            // windows larger and smaller than the file, the whole file and an empty file
+            scheduler.prefetch(small, 1024 * 1024);
+            scheduler.prefetch(large, 1024 * 1024);
+            scheduler.prefetch(large, 0);
+            scheduler.prefetch(empty, 1024 * 1024);
+            try {
+                scheduler.prefetch(folder.getRoot().toPath().resolve("missing.tif"), 1024);
+                fail("The missing file was not reported");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package de.intranda.goobi.plugins;
+
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test data shared by the benchmarks, modeled after the sample configuration and a typical JHOVE result of a camera TIFF.
+ */
+final class BenchmarkData {
+    static final String IMAGE_DATA = "ImageCaptureMetadata/DigitalCameraCapture/CameraCaptureSettings/ImageData/";
+
+    private static final Namespace JHOVE = MixMetadataEnrichmentPlugin.NAMESPACE_JHOVE;
+    private static final Namespace MIX = MixMetadataEnrichmentPlugin.NAMESPACE_MIX;
+
+    private static final String[][] PROPERTIES = {
+            { "FNumber", "28/10", "fNumber", "rational2real" },
+            { "ExposureTime", "1/125", "exposureTime", "rational2real" },
+            { "ISOSpeedRatings", "200", "isoSpeedRatings", null },
+            { "ShutterSpeedValue", "6965784/1000000", "shutterSpeedValue", "rational2rationalType" },
+            { "ApertureValue", "2970854/1000000", "apertureValue", "rational2rationalType" },
+            { "ExposureBiasValue", "0/1", "exposureBiasValue", "rational2rationalType" },
+            { "MaxApertureValue", "297/100", "maxApertureValue", "rational2rationalType" } };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return the extra mappings of the sample configuration
+     */
+    static List<ExtraMapping> extraMappings() {
+        return Arrays.stream(PROPERTIES)
+                .map(p -> new ExtraMapping(propertySource(p[0]), IMAGE_DATA + p[2], p[3]))
+                .toList();
+    }
+
+    static String propertySource(String propertyName) {
+        return "//jhove:property[jhove:name='" + propertyName + "']//jhove:value[1]";
+    }
+
+    /**
+     * @return a JHOVE document with a MIX element and the EXIF properties of the sample configuration between raw tag properties
+     */
+    static Document jhoveDocument() {
+        Element root = new Element("jhove", JHOVE);
+        Element repInfo = new Element("repInfo", JHOVE);
+        root.addContent(repInfo);
+        Element properties = new Element("properties", JHOVE);
+        repInfo.addContent(properties);
+        for (int i = 0; i < 50; i++) {
+            properties.addContent(property("Tag" + i, String.valueOf(i)));
+        }
+        for (String[] p : PROPERTIES) {
+            properties.addContent(property(p[0], p[1]));
+        }
+        Element mixProperty = new Element("property", JHOVE);
+        mixProperty.addContent(new Element("name", JHOVE).setText("NisoImageMetadata"));
+        Element values = new Element("values", JHOVE);
+        mixProperty.addContent(values);
+        Element value = new Element("value", JHOVE);
+        values.addContent(value);
+        value.addContent(unsortedMix());
+        properties.addContent(mixProperty);
+        return new Document(root);
+    }
+
+    private static Element property(String name, String text) {
+        Element property = new Element("property", JHOVE);
+        property.addContent(new Element("name", JHOVE).setText(name));
+        Element values = new Element("values", JHOVE);
+        values.addContent(new Element("value", JHOVE).setText(text));
+        property.addContent(values);
+        return property;
+    }
+
+    /**
+     * @return a MIX element with all sections and most of their children in reverse schema order
+     */
+    static Element unsortedMix() {
+        Element mix = new Element("mix", MIX);
+        Element capture = child(mix, "ImageCaptureMetadata");
+        Element imageData = child(child(child(capture, "DigitalCameraCapture"), "CameraCaptureSettings"), "ImageData");
+        for (int i = PROPERTIES.length - 1; i >= 0; i--) {
+            child(imageData, PROPERTIES[i][2]).setText("1");
+        }
+        child(capture, "GeneralCaptureInformation");
+        Element assessment = child(mix, "ImageAssessmentMetadata");
+        Element encoding = child(assessment, "ImageColorEncoding");
+        child(encoding, "samplesPerPixel").setText("3");
+        Element bitsPerSample = child(encoding, "BitsPerSample");
+        child(bitsPerSample, "bitsPerSampleUnit").setText("integer");
+        child(bitsPerSample, "bitsPerSampleValue").setText("8,8,8");
+        Element metrics = child(assessment, "SpatialMetrics");
+        child(metrics, "ySamplingFrequency");
+        child(metrics, "xSamplingFrequency");
+        child(metrics, "samplingFrequencyUnit").setText("in.");
+        Element basicImage = child(mix, "BasicImageInformation");
+        Element characteristics = child(basicImage, "BasicImageCharacteristics");
+        child(characteristics, "imageHeight").setText("4000");
+        child(characteristics, "imageWidth").setText("3000");
+        Element basicObject = child(mix, "BasicDigitalObjectInformation");
+        child(basicObject, "byteOrder").setText("little endian");
+        child(basicObject, "fileSize").setText("36000000");
+        child(child(basicObject, "FormatDesignation"), "formatName").setText("image/tiff");
+        return mix;
+    }
+
+    private static Element child(Element parent, String name) {
+        Element child = new Element(name, MIX);
+        parent.addContent(child);
+        return child;
+    }
+}
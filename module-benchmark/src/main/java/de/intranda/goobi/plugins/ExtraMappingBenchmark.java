@@ -0,0 +1,57 @@
+package de.intranda.goobi.plugins;
+
+import org.jdom2.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup of mapping sources in a JHOVE result, through the property index and as XPath expression.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtraMappingBenchmark {
+    private Document document;
+    private JhoveResult jhoveResult;
+    private ExtraMapping propertyMapping;
+    private ExtraMapping xpathMapping;
+
+    @Setup
+    public void setUp() {
+        document = BenchmarkData.jhoveDocument();
+        jhoveResult = JhoveResult.scan(document, Set.of("FNumber", "MaxApertureValue"));
+        propertyMapping = new ExtraMapping(BenchmarkData.propertySource("MaxApertureValue"), BenchmarkData.IMAGE_DATA + "maxApertureValue", null);
+        // an equivalent source that is not recognized as property lookup
+        xpathMapping = new ExtraMapping("//jhove:property[jhove:name='MaxApertureValue']/jhove:values/jhove:value",
+                BenchmarkData.IMAGE_DATA + "maxApertureValue", null);
+    }
+
+    @Benchmark
+    public JhoveResult scan() {
+        return JhoveResult.scan(document, Set.of("FNumber", "MaxApertureValue"));
+    }
+
+    @Benchmark
+    public String findByProperty() {
+        return propertyMapping.find(jhoveResult);
+    }
+
+    @Benchmark
+    public String findByXPath() {
+        return xpathMapping.find(jhoveResult);
+    }
+}
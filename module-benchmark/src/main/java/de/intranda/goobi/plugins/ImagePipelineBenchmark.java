@@ -0,0 +1,105 @@
+package de.intranda.goobi.plugins;
+
+import org.jdom2.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Processing of a whole folder through the {@link ImagePipeline} as done by the plugin: analysis, extra mappings and sorting of every image on a
+ * pool of workers, with the results consumed in input order. The score is the time for the complete folder, so the folder sizes show whether the
+ * cost per image stays constant. Reading and writing the mets file depends on Goobi and is not part of the benchmark.
+ * <p>
+ * The JHOVE configuration is taken from the system property {@code jhove.conf}, by default the sample configuration of the plugin is used.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImagePipelineBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    public int files;
+
+    @Param({ "header", "jhove" })
+    public String engine;
+
+    @Param({ "1", "4" })
+    public int workers;
+
+    private List<Path> images;
+    private JhoveAnalyzerPool analyzers;
+    private ImageHeaderReader headerReader;
+    private MixExtractor extractor;
+    private Set<String> mappedPropertyNames;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        images = SyntheticImages.tiffFolder(files);
+        analyzers = JhoveAnalyzerPool.forConfiguration(new File(System.getProperty("jhove.conf", "install/jhove/jhove.conf")));
+        headerReader = "header".equals(engine) ? new ImageHeaderReader() : null;
+        List<ExtraMapping> mappings = BenchmarkData.extraMappings();
+        mappedPropertyNames = mappings.stream().map(ExtraMapping::getPropertyName).filter(Objects::nonNull).collect(Collectors.toSet());
+        extractor = new MixExtractor(mappings, new MixElementSorter(), EnrichmentMetrics.NONE);
+        executor = Executors.newFixedThreadPool(workers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The queue holds four images per worker, the default {@code queueSize} of the plugin.
+     */
+    @Benchmark
+    public int processFolder(Blackhole blackhole) throws Exception {
+        int processed = 0;
+        try (ImagePipeline<Element> pipeline = new ImagePipeline<>(images, executor, 4 * workers, this::process)) {
+            pipeline.start();
+            while (pipeline.hasNext()) {
+                blackhole.consume(pipeline.next());
+                processed++;
+            }
+        }
+        return processed;
+    }
+
+    private Element process(Path image) throws Exception {
+        JhoveResult jhoveResult = headerReader == null ? null : headerReader.read(image);
+        if (jhoveResult == null) {
+            // every image takes an engine from the pool, like the workers of the plugin
+            JhoveAnalyzer analyzer = analyzers.acquire();
+            try {
+                jhoveResult = analyzer.analyze(image, null, null, mappedPropertyNames, false);
+            } finally {
+                analyzers.release(analyzer);
+            }
+        }
+        return extractor.extract(image, jhoveResult);
+    }
+}
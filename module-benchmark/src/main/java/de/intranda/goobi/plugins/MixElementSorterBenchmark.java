@@ -0,0 +1,57 @@
+package de.intranda.goobi.plugins;
+
+import org.jdom2.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting of a MIX tree. Sorting changes the tree, so the unsorted tree is cloned in every invocation, {@link #cloneOnly()} is the baseline for
+ * the cost of the clone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MixElementSorterBenchmark {
+    private MixElementSorter sorter;
+    private Element unsorted;
+    private Element sorted;
+
+    @Setup
+    public void setUp() throws Exception {
+        sorter = new MixElementSorter();
+        unsorted = BenchmarkData.unsortedMix();
+        sorted = unsorted.clone();
+        sorter.fixOrder(sorted);
+    }
+
+    @Benchmark
+    public Element cloneOnly() {
+        return unsorted.clone();
+    }
+
+    @Benchmark
+    public Element fixOrderUnsorted() {
+        Element mix = unsorted.clone();
+        sorter.fixOrder(mix);
+        return mix;
+    }
+
+    @Benchmark
+    public Element fixOrderAlreadySorted() {
+        sorter.fixOrder(sorted);
+        return sorted;
+    }
+}
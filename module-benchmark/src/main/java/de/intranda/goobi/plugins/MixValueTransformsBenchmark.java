@@ -0,0 +1,64 @@
+package de.intranda.goobi.plugins;
+
+import org.jdom2.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The value transformations of the extra mappings and their application to a MIX element.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MixValueTransformsBenchmark {
+    private MappingTree mappingTree;
+    private JhoveResult jhoveResult;
+
+    @Setup
+    public void setUp() {
+        List<ExtraMapping> mappings = BenchmarkData.extraMappings();
+        mappingTree = new MappingTree(mappings);
+        jhoveResult = JhoveResult.scan(BenchmarkData.jhoveDocument(),
+                mappings.stream().map(ExtraMapping::getPropertyName).collect(Collectors.toSet()));
+    }
+
+    @Benchmark
+    public String calculateDivision() {
+        return MixValueTransforms.calculateDivision("2970854/1000000");
+    }
+
+    @Benchmark
+    public List<Element> generateRationalTypeElement() {
+        return MixValueTransforms.generateRationalTypeElement("2970854/1000000");
+    }
+
+    @Benchmark
+    public String apexToSeconds() {
+        return MixValueTransforms.apexToSeconds("6965784/1000000");
+    }
+
+    /**
+     * All mappings of the sample configuration applied to an empty MIX element, so all target elements are created.
+     */
+    @Benchmark
+    public Element applyMappings() {
+        Element mix = new Element("mix", MixMetadataEnrichmentPlugin.NAMESPACE_MIX);
+        mappingTree.apply(mix, jhoveResult);
+        return mix;
+    }
+}
@@ -0,0 +1,61 @@
+package de.intranda.goobi.plugins;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+/**
+ * Generates folders of small TIFF images for the benchmarks.
+ * <p>
+ * The folders are kept in {@code java.io.tmpdir/mix-benchmark} and only generated again if they are incomplete.
+ */
+final class SyntheticImages {
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * @return the images of a folder with the given number of TIFF files
+     */
+    static List<Path> tiffFolder(int count) throws IOException {
+        Path folder = Paths.get(System.getProperty("java.io.tmpdir"), "mix-benchmark", "tiff-" + count);
+        Files.createDirectories(folder);
+        List<Path> images = new ArrayList<>(count);
+        Random random = new Random(count);
+        for (int i = 0; i < count; i++) {
+            Path image = folder.resolve(String.format("%08d.tif", i + 1));
+            if (!Files.exists(image)) {
+                writeTiff(image, 64 + random.nextInt(64), 48 + random.nextInt(48), random);
+            }
+            images.add(image);
+        }
+        try (Stream<Path> files = Files.list(folder)) {
+            if (files.count() != count) {
+                throw new IOException("Unexpected files in " + folder);
+            }
+        }
+        return images;
+    }
+
+    private static void writeTiff(Path file, int width, int height, Random random) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+        graphics.drawString("MIX", 4, height / 2);
+        graphics.dispose();
+        if (!ImageIO.write(image, "tiff", file.toFile())) {
+            throw new IOException("No TIFF writer available, Java 9 or newer is required");
+        }
+    }
+}